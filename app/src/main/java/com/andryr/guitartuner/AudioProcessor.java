@@ -16,11 +16,15 @@
 
 package com.andryr.guitartuner;
 
-import android.media.AudioFormat;
-import android.media.AudioRecord;
-import android.media.MediaRecorder;
 import android.util.Log;
 
+import com.andryr.guitartuner.engine.PitchDetector;
+import com.andryr.guitartuner.engine.PitchEngine;
+import com.andryr.guitartuner.engine.PitchProcessor;
+import com.andryr.guitartuner.engine.PitchResult;
+import com.andryr.guitartuner.engine.StrumAnalyzer;
+import com.andryr.guitartuner.engine.StrumResult;
+
 /**
  * Created by andry on 24/04/16.
  */
@@ -28,141 +32,98 @@ public class AudioProcessor implements Runnable {
 
     private static final String TAG = AudioProcessor.class.getCanonicalName();
 
-    private static final int[] SAMPLE_RATES = {44100, 22050, 16000, 11025, 8000};
-
-
     public interface PitchDetectionListener {
-        void onPitchDetected(float freq, double avgIntensity);
+        /**
+         * Called on the processing thread, result is only valid during the call.
+         */
+        void onPitchDetected(PitchResult result);
     }
 
-    private float mLastComputedFreq = 0;
+    public interface StrumListener {
+        /**
+         * Called on the processing thread, result is only valid during the call.
+         */
+        void onStrumAnalyzed(StrumResult result);
+    }
 
-    private AudioRecord mAudioRecord;
+    private final PitchEngine mPitchEngine = new PitchEngine();
+
+    private PitchProcessor mPitchProcessor;
     private PitchDetectionListener mPitchDetectionListener;
-    private boolean mStop = false;
+    private float[] mStrumTargets;
+    private StrumListener mStrumListener;
 
 
     public void setPitchDetectionListener(PitchDetectionListener pitchDetectionListener) {
         mPitchDetectionListener = pitchDetectionListener;
     }
 
-    public void init() {
-        int bufSize = 16384;
-        int avalaibleSampleRates = SAMPLE_RATES.length;
-        int i = 0;
-        do {
-            int sampleRate = SAMPLE_RATES[i];
-            int minBufSize = AudioRecord.getMinBufferSize(sampleRate, AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT);
-            if (minBufSize != AudioRecord.ERROR_BAD_VALUE && minBufSize != AudioRecord.ERROR) {
-                mAudioRecord = new AudioRecord(MediaRecorder.AudioSource.MIC, sampleRate, AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT, Math.max(bufSize, minBufSize * 4));
-            }
-            i++;
-        }
-        while (i < avalaibleSampleRates && (mAudioRecord == null || mAudioRecord.getState() != AudioRecord.STATE_INITIALIZED));
+    public void setPitchDetector(PitchDetector pitchDetector) {
+        mPitchEngine.setDetector(pitchDetector);
     }
 
-    public void stop() {
-        mStop = true;
-        mAudioRecord.stop();
-        mAudioRecord.release();
+    /**
+     * @see PitchEngine#setFrequencyRange(float, float, float)
+     */
+    public void setFrequencyRange(float lowestFreq, float highestFreq, float semitones) {
+        mPitchEngine.setFrequencyRange(lowestFreq, highestFreq, semitones);
     }
 
-    @Override
-    public void run() {
-
-
-        Log.d(TAG, "sampleRate="+mAudioRecord.getSampleRate());
-
-        if(mAudioRecord.getState() != AudioRecord.STATE_INITIALIZED) {
-            Log.e(TAG, "AudioRecord not initialized");
-        }
-
-        mAudioRecord.startRecording();
-        int bufSize = 8192;
-        final int sampleRate = mAudioRecord.getSampleRate();
-        final short[] buffer = new short[bufSize];
-
-        do {
-            final int read = mAudioRecord.read(buffer, 0, bufSize);
-            if (read > 0) {
-                final double intensity = averageIntensity(buffer, read);
-
-                int maxZeroCrossing = (int) (250 * (read / 8192) * (sampleRate / 44100.0));
-
-                if (intensity >= 50 && zeroCrossingCount(buffer) <= maxZeroCrossing) {
-
-                    float freq = getPitch(buffer, read / 4, read, sampleRate, 50, 500);
-                    if (Math.abs(freq - mLastComputedFreq) <= 5f) {
-                        mPitchDetectionListener.onPitchDetected(freq, intensity);
-                    }
-                    mLastComputedFreq = freq;
-
-
-                }
-            }
-        } while (!mStop);
-
-        Log.d(TAG, "Thread terminated");
+    /**
+     * @see PitchEngine#setTracking(boolean)
+     */
+    public void setTracking(boolean tracking) {
+        mPitchEngine.setTracking(tracking);
     }
 
-    private double averageIntensity(short[] data, int frames) {
-
-        double sum = 0;
-        for (int i = 0; i < frames; i++) {
-            sum += Math.abs(data[i]);
-        }
-        return sum / frames;
-
+    /**
+     * @see PitchEngine#setStringTargets(float[], float)
+     */
+    public void setStringTargets(float[] targets, float semitones) {
+        mPitchEngine.setStringTargets(targets, semitones);
     }
 
-    private int zeroCrossingCount(short[] data) {
-        int len = data.length;
-        int count = 0;
-        boolean prevValPositive = data[0] >= 0;
-        for (int i = 1; i < len; i++) {
-            boolean positive = data[i] >= 0;
-            if (prevValPositive == !positive)
-                count++;
-
-            prevValPositive = positive;
-        }
-        return count;
+    /**
+     * Tunes all the strings from a single strum instead of one string at a time, the pitch
+     * detection listener is then not called. Must be called before {@link #init()}.
+     *
+     * @param targets frequency of each string, or null to detect a single pitch
+     */
+    public void setStrumMode(float[] targets, StrumListener listener) {
+        mStrumTargets = targets;
+        mStrumListener = listener;
     }
 
-    private float getPitch(short[] data, int windowSize, int frames, float sampleRate, float minFreq, float maxFreq) {
-
-        float maxOffset = sampleRate / minFreq;
-        float minOffset = sampleRate / maxFreq;
-
-
-        int minSum = Integer.MAX_VALUE;
-        int minSumLag = 0;
-        int[] sums = new int[Math.round(maxOffset) + 2];
-
-        for (int lag = (int) minOffset; lag <= maxOffset; lag++) {
-            int sum = 0;
-            for (int i = 0; i < windowSize; i++) {
-
-                int oldIndex = i - lag;
-
-                int sample = ((oldIndex < 0) ? data[frames + oldIndex] : data[oldIndex]);
-
-                sum += Math.abs(sample - data[i]);
-            }
-
-            sums[lag] = sum;
-
-            if (sum < minSum) {
-                minSum = sum;
-                minSumLag = lag;
+    public void init() {
+        mPitchProcessor = new PitchProcessor(new AudioRecordSource(), mPitchEngine);
+        mPitchProcessor.setListener(new PitchProcessor.Listener() {
+            @Override
+            public void onPitchDetected(PitchResult result) {
+                mPitchDetectionListener.onPitchDetected(result);
             }
+        });
+        if (mStrumTargets != null) {
+            mPitchProcessor.setStrumAnalyzer(new StrumAnalyzer(mStrumTargets), new PitchProcessor.StrumListener() {
+                @Override
+                public void onStrumAnalyzed(StrumResult result) {
+                    mStrumListener.onStrumAnalyzed(result);
+                }
+            });
         }
+    }
 
-		// quadratic interpolation
-		float delta = (float) (sums[minSumLag + 1] - sums[minSumLag - 1]) / ((float)
-			(2 * (2 * sums[minSumLag] - sums[minSumLag + 1] - sums[minSumLag - 1])));
-		return sampleRate / (minSumLag + delta);
+    /**
+     * Returns immediately, the microphone is released by the processing thread once the
+     * current hop is done.
+     */
+    public void stop() {
+        mPitchProcessor.stop();
     }
 
+    @Override
+    public void run() {
+        mPitchProcessor.run();
+        Log.d(TAG, "Thread terminated");
+    }
 
 }
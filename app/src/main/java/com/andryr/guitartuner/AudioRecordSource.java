@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner;
+
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.MediaRecorder;
+import android.util.Log;
+
+import com.andryr.guitartuner.engine.AudioSource;
+
+/**
+ * Microphone input through {@link AudioRecord}, at the highest sample rate the device
+ * supports.
+ * <p>
+ * The microphone is only opened by {@link #start()}, on the processing thread, so that a new
+ * source never opens it while the loop of the previous one is still releasing it.
+ */
+public class AudioRecordSource implements AudioSource {
+
+    private static final String TAG = AudioRecordSource.class.getCanonicalName();
+
+    private static final int[] SAMPLE_RATES = {44100, 22050, 16000, 11025, 8000};
+    private static final int BUFFER_SIZE = 16384;
+
+    private AudioRecord mAudioRecord;
+
+    /**
+     * @return the sample rate in Hz, 0 until the source is started
+     */
+    @Override
+    public int getSampleRate() {
+        return mAudioRecord != null ? mAudioRecord.getSampleRate() : 0;
+    }
+
+    @Override
+    public void start() {
+        int i = 0;
+        do {
+            int sampleRate = SAMPLE_RATES[i];
+            int minBufSize = AudioRecord.getMinBufferSize(sampleRate, AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT);
+            if (minBufSize != AudioRecord.ERROR_BAD_VALUE && minBufSize != AudioRecord.ERROR) {
+                if (mAudioRecord != null) {
+                    mAudioRecord.release();
+                }
+                mAudioRecord = new AudioRecord(MediaRecorder.AudioSource.MIC, sampleRate, AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT, Math.max(BUFFER_SIZE, minBufSize * 4));
+            }
+            i++;
+        }
+        while (i < SAMPLE_RATES.length && (mAudioRecord == null || mAudioRecord.getState() != AudioRecord.STATE_INITIALIZED));
+
+        Log.d(TAG, "sampleRate=" + mAudioRecord.getSampleRate());
+
+        if (mAudioRecord.getState() != AudioRecord.STATE_INITIALIZED) {
+            Log.e(TAG, "AudioRecord not initialized");
+        }
+
+        mAudioRecord.startRecording();
+    }
+
+    @Override
+    public int read(short[] buffer, int offset, int count) {
+        int read = mAudioRecord.read(buffer, offset, count);
+        // error codes are negative, the microphone never runs out of samples
+        return Math.max(0, read);
+    }
+
+    @Override
+    public void stop() {
+        if (mAudioRecord != null) {
+            mAudioRecord.stop();
+            mAudioRecord.release();
+            mAudioRecord = null;
+        }
+    }
+}
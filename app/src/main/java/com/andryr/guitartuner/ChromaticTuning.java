@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner;
+
+/**
+ * Every equal tempered note of the piano range, A0 to C8, for any instrument.
+ * <p>
+ * The notes are tabulated once from the A4 reference. A frequency is resolved to its note by
+ * rounding its distance to A4 in semitones, which costs the same whatever the number of notes.
+ */
+public class ChromaticTuning extends Tuning {
+
+    public static final float DEFAULT_REFERENCE = 440f;
+
+    private static final String[] NOTE_NAMES = {"A", "A#", "B", "C", "C#", "D", "D#", "E", "F", "F#", "G", "G#"};
+    private static final int NOTE_COUNT = 88;
+    private static final int REFERENCE_INDEX = 48;
+
+    // detection range, the table goes further but the detectors are not reliable there
+    private static final int LOWEST_DETECTED_INDEX = 2; // B0, low string of a five string bass
+    private static final int HIGHEST_DETECTED_INDEX = 75; // C7
+
+    private final float mReference;
+
+    /**
+     * @param reference frequency of A4 in Hz
+     */
+    public ChromaticTuning(String name, float reference) {
+        super(name, createPitches(reference));
+        mReference = reference;
+    }
+
+    public float getReference() {
+        return mReference;
+    }
+
+    private static Pitch[] createPitches(float reference) {
+        Pitch[] pitches = new Pitch[NOTE_COUNT];
+        for (int i = 0; i < NOTE_COUNT; i++) {
+            // octave numbers start at C
+            int octave = (i + 9) / 12;
+            String name = NOTE_NAMES[i % 12] + octave;
+            float frequency = (float) (reference * Math.pow(2, (i - REFERENCE_INDEX) / 12.0));
+            pitches[i] = new Pitch(frequency, name);
+        }
+        return pitches;
+    }
+
+    @Override
+    public int closestPitchIndex(float freq) {
+        return noteIndex(cents(freq, mReference));
+    }
+
+    @Override
+    public void match(float freq, Match match) {
+        float fromReference = cents(freq, mReference);
+        int index = noteIndex(fromReference);
+        match.index = index;
+        match.cents = fromReference - (index - REFERENCE_INDEX) * 100;
+    }
+
+    private int noteIndex(float centsFromReference) {
+        int index = Math.round(centsFromReference / 100) + REFERENCE_INDEX;
+        return Math.max(0, Math.min(NOTE_COUNT - 1, index));
+    }
+
+    @Override
+    public float getLowestFrequency() {
+        return pitches[LOWEST_DETECTED_INDEX].frequency;
+    }
+
+    @Override
+    public float getHighestFrequency() {
+        return pitches[HIGHEST_DETECTED_INDEX].frequency;
+    }
+}
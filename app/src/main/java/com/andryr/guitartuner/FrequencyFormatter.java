@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Formats frequencies like String.format("%.02fHz", freq) does, into a char buffer owned by
+ * the formatter, so that a view can be updated for every detected pitch without allocating.
+ * <p>
+ * The buffer is overwritten by the next call to {@link #format}; pass it to
+ * TextView.setText(char[], int, int) or NeedleView.setTickLabel(float, char[], int, int),
+ * which both take the characters as they are. Use one formatter per view.
+ */
+public class FrequencyFormatter {
+
+    private static final char[] UNIT = {'H', 'z'};
+
+    private final char mDecimalSeparator;
+    // long digits, sign, separator, decimals and unit
+    private final char[] mBuffer = new char[24];
+    private int mLength = 0;
+
+    public FrequencyFormatter() {
+        this(Locale.getDefault());
+    }
+
+    public FrequencyFormatter(Locale locale) {
+        mDecimalSeparator = DecimalFormatSymbols.getInstance(locale).getDecimalSeparator();
+    }
+
+    /**
+     * @return the number of characters written to {@link #getBuffer()}
+     */
+    public int format(float freq) {
+        if (Float.isNaN(freq) || Float.isInfinite(freq)) {
+            freq = 0;
+        }
+        long hundredths = Math.round(Math.abs((double) freq) * 100);
+
+        // digits are written from the end of the buffer, then moved to the start
+        final char[] buffer = mBuffer;
+        int pos = buffer.length;
+        for (int i = UNIT.length - 1; i >= 0; i--) {
+            buffer[--pos] = UNIT[i];
+        }
+        buffer[--pos] = (char) ('0' + hundredths % 10);
+        hundredths /= 10;
+        buffer[--pos] = (char) ('0' + hundredths % 10);
+        hundredths /= 10;
+        buffer[--pos] = mDecimalSeparator;
+        do {
+            buffer[--pos] = (char) ('0' + hundredths % 10);
+            hundredths /= 10;
+        } while (hundredths > 0);
+        if (freq < 0) {
+            buffer[--pos] = '-';
+        }
+
+        mLength = buffer.length - pos;
+        System.arraycopy(buffer, pos, buffer, 0, mLength);
+        return mLength;
+    }
+
+    public char[] getBuffer() {
+        return mBuffer;
+    }
+
+    public int getLength() {
+        return mLength;
+    }
+
+    @Override
+    public String toString() {
+        return new String(mBuffer, 0, mLength);
+    }
+}
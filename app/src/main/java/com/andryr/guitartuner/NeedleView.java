@@ -16,25 +16,34 @@
 
 package com.andryr.guitartuner;
 
-import android.animation.ValueAnimator;
 import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.os.Build;
+import android.support.v4.view.ViewCompat;
 import android.util.AttributeSet;
 import android.view.View;
+import android.view.animation.AnimationUtils;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Created by andry on 22/04/16.
  */
 public class NeedleView extends View {
 
+    // angular frequency of the needle spring in rad/s, it settles in about a quarter of a second
+    private static final double SPRING_FREQUENCY = 25;
+    private static final double SETTLED_ANGLE = 0.01;
+    private static final double SETTLED_VELOCITY = 0.1;
+    // longer gaps between frames (the view was hidden for instance) are not simulated
+    private static final long MAX_FRAME_TIME = 100;
 
     private double mAngle;
     private Paint mPaint;
@@ -48,9 +57,19 @@ public class NeedleView extends View {
     private int mSmallTicksColor;
     private int mBigTicksColor;
     private int mTextColor;
-    private Map<Float, String> mTickLabels = new HashMap<>();
+    private List<TickLabel> mTickLabels = new ArrayList<>();
     private float mTipPosition;
     private float mTipPos;
+    private double mTargetAngle;
+    private double mAngularVelocity;
+    private boolean mAnimating = false;
+    private long mLastFrameTime;
+    // angle between the middle and the ends of the dial, in degrees
+    private double mTipAngleSpan = 90;
+    private Bitmap mDialBitmap;
+    private Canvas mDialCanvas;
+    private boolean mDialDirty = true;
+    private float mTickLabelHeight;
 
 
     public NeedleView(Context context) {
@@ -96,25 +115,41 @@ public class NeedleView extends View {
     public void animateTip(float toPos) {
 
         toPos = Math.min(1.0F, Math.max(-1.0F, toPos));
-        int width = getWidth() - getPaddingLeft() - getPaddingRight();
-        int height = getHeight() - getPaddingTop() - getPaddingBottom();
+        double toAngle = 90 + toPos * mTipAngleSpan;
+
+        // the spring keeps its velocity, so a new target bends the motion instead of restarting it
+        mTargetAngle = toAngle;
+        if (!mAnimating) {
+            mAnimating = true;
+            mLastFrameTime = AnimationUtils.currentAnimationTimeMillis();
+            ViewCompat.postInvalidateOnAnimation(this);
+        }
+    }
 
-        double toAngle;
-        if(height > width/2f)
-            toAngle = 90 + toPos * (90 - Math.toDegrees(Math.acos(((width) / 2.0F - mStrokeWidth) / height)));
-        else
-            toAngle = 90 + toPos * 90;
-
-        ValueAnimator animator = ValueAnimator.ofFloat((float) mAngle, (float) toAngle);
-        animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator animation) {
-                mAngle = (float) animation.getAnimatedValue();
-                invalidate();
-            }
-        });
-        animator.setDuration(200);
-        animator.start();
+    /**
+     * Advances the needle towards mTargetAngle as a critically damped spring, using the exact
+     * solution so that the motion stays stable whatever the time between frames.
+     *
+     * @return true if the needle is still moving
+     */
+    private boolean stepAnimation() {
+        long now = AnimationUtils.currentAnimationTimeMillis();
+        double dt = Math.min(MAX_FRAME_TIME, now - mLastFrameTime) / 1000.0;
+        mLastFrameTime = now;
+
+        double displacement = mAngle - mTargetAngle;
+        double decay = Math.exp(-SPRING_FREQUENCY * dt);
+        double impulse = (mAngularVelocity + SPRING_FREQUENCY * displacement) * dt;
+        displacement = (displacement + impulse) * decay;
+        mAngularVelocity = (mAngularVelocity - SPRING_FREQUENCY * impulse) * decay;
+
+        if (Math.abs(displacement) < SETTLED_ANGLE && Math.abs(mAngularVelocity) < SETTLED_VELOCITY) {
+            mAngle = mTargetAngle;
+            mAngularVelocity = 0;
+            return false;
+        }
+        mAngle = mTargetAngle + displacement;
+        return true;
     }
 
     public float getTipPos() {
@@ -123,36 +158,135 @@ public class NeedleView extends View {
 
     public void setTipPos(float pos) {
         mTipPosition = Math.min(1.0F, Math.max(-1.0F, pos));
-        int width = getWidth() - getPaddingLeft() - getPaddingRight();
-        int height = getHeight() - getPaddingTop() - getPaddingBottom();
-        if(height > width/2f)
-            mAngle = 90 + pos * (90 - Math.toDegrees(Math.acos(((width) / 2.0F - mStrokeWidth) / height)));
-        else
-            mAngle = 90 + pos * 90;
-
+        mAngle = 90 + pos * mTipAngleSpan;
+        mTargetAngle = mAngle;
+        mAngularVelocity = 0;
+        mAnimating = false;
     }
 
     public void setTickLabel(float pos, String label) {
-        mTickLabels.put(pos, label);
+        TickLabel tickLabel = obtainTickLabel(pos, label.length());
+        if (!tickLabel.contentEquals(label)) {
+            label.getChars(0, label.length(), tickLabel.text, 0);
+            tickLabel.length = label.length();
+            invalidateDial();
+        }
+    }
+
+    /**
+     * Same as {@link #setTickLabel(float, String)} for a label in a char buffer, such as the one
+     * of a {@link FrequencyFormatter}. The characters are copied, the buffer can be reused.
+     */
+    public void setTickLabel(float pos, char[] text, int start, int length) {
+        TickLabel tickLabel = obtainTickLabel(pos, length);
+        if (!tickLabel.contentEquals(text, start, length)) {
+            System.arraycopy(text, start, tickLabel.text, 0, length);
+            tickLabel.length = length;
+            invalidateDial();
+        }
     }
 
     public void removeTickLabel(float pos) {
-        mTickLabels.remove(pos);
+        for (int i = 0; i < mTickLabels.size(); i++) {
+            if (mTickLabels.get(i).pos == pos) {
+                mTickLabels.remove(i);
+                invalidateDial();
+                return;
+            }
+        }
+    }
+
+    private TickLabel obtainTickLabel(float pos, int capacity) {
+        TickLabel tickLabel = null;
+        for (int i = 0; i < mTickLabels.size(); i++) {
+            if (mTickLabels.get(i).pos == pos) {
+                tickLabel = mTickLabels.get(i);
+                break;
+            }
+        }
+        if (tickLabel == null) {
+            tickLabel = new TickLabel(pos);
+            mTickLabels.add(tickLabel);
+        }
+        if (tickLabel.text.length < capacity) {
+            tickLabel.text = new char[capacity];
+            tickLabel.length = 0;
+        }
+        return tickLabel;
+    }
+
+    private void invalidateDial() {
+        mDialDirty = true;
+        invalidate();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        int width = w - getPaddingLeft() - getPaddingRight();
+        int height = h - getPaddingTop() - getPaddingBottom();
+        double tipPos = (mAngle - 90) / mTipAngleSpan;
+        double targetPos = (mTargetAngle - 90) / mTipAngleSpan;
+        if (height > width / 2f)
+            mTipAngleSpan = 90 - Math.toDegrees(Math.acos((width / 2.0F - mStrokeWidth) / height));
+        else
+            mTipAngleSpan = 90;
+        // keep the needle on the same graduation
+        mAngle = 90 + tipPos * mTipAngleSpan;
+        mTargetAngle = 90 + targetPos * mTipAngleSpan;
+
+        releaseDial();
+        mDialDirty = true;
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        releaseDial();
+    }
+
+    private void releaseDial() {
+        if (mDialBitmap != null) {
+            mDialBitmap.recycle();
+            mDialBitmap = null;
+            mDialCanvas = null;
+        }
     }
 
     @Override
     protected void onDraw(Canvas canvas) {
+        if (mAnimating) {
+            mAnimating = stepAnimation();
+            if (mAnimating) {
+                ViewCompat.postInvalidateOnAnimation(this);
+            }
+        }
+        if (getWidth() == 0 || getHeight() == 0) {
+            return;
+        }
         int width = getWidth() - getPaddingLeft() - getPaddingRight();
         int height = getHeight() - getPaddingTop() - getPaddingBottom();
-        mPaint.setStyle(Paint.Style.STROKE);
-        mPaint.setStrokeCap(Paint.Cap.BUTT);
 
-        drawTickLabels(canvas, width, height);
-        float tickLabelHeight = mPaint.descent() - mPaint.ascent();
+        // the ticks and labels only change with the size or the labels, only the needle moves
+        if (mDialBitmap == null) {
+            mDialBitmap = Bitmap.createBitmap(getWidth(), getHeight(), Bitmap.Config.ARGB_8888);
+            mDialCanvas = new Canvas(mDialBitmap);
+            mDialDirty = true;
+        }
+        if (mDialDirty) {
+            mDialBitmap.eraseColor(Color.TRANSPARENT);
+            mPaint.setStyle(Paint.Style.STROKE);
+            mPaint.setStrokeCap(Paint.Cap.BUTT);
+
+            drawTickLabels(mDialCanvas, width, height);
+            mTickLabelHeight = mPaint.descent() - mPaint.ascent();
 
-        // drawArc(canvas, needleLength, width, height);
-        drawTicks(canvas, width, height, tickLabelHeight);
-        drawNeedle(canvas, width, height, tickLabelHeight);
+            // drawArc(canvas, needleLength, width, height);
+            drawTicks(mDialCanvas, width, height, mTickLabelHeight);
+            mDialDirty = false;
+        }
+        canvas.drawBitmap(mDialBitmap, 0, 0, null);
+        drawNeedle(canvas, width, height, mTickLabelHeight);
     }
 
     private void drawTickLabels(Canvas canvas, int width, int height) {
@@ -161,20 +295,22 @@ public class NeedleView extends View {
         mPaint.setColor(mTextColor);
         mPaint.setTextSize(mTickLabelTextSize);
         mPaint.setStrokeWidth(mTextStrokeWidth);
-        for (Map.Entry<Float, String> entry : mTickLabels.entrySet()) {
-            String text = entry.getValue();
-            float textWidth = mPaint.measureText(text);
-            float pos = entry.getKey();
+        for (int i = 0; i < mTickLabels.size(); i++) {
+            TickLabel tickLabel = mTickLabels.get(i);
+            char[] text = tickLabel.text;
+            int length = tickLabel.length;
+            float textWidth = mPaint.measureText(text, 0, length);
+            float pos = tickLabel.pos;
             if (pos == 0) {
-                canvas.drawText(text, (width - textWidth) / 2.0F + getPaddingLeft(), getPaddingTop() - mPaint.ascent() / 2.0F, mPaint);
+                canvas.drawText(text, 0, length, (width - textWidth) / 2.0F + getPaddingLeft(), getPaddingTop() - mPaint.ascent() / 2.0F, mPaint);
             } else {
                 float angle = (float) (pos * (90 - Math.toDegrees(Math.acos((width / 2.0F) / height))));
                 canvas.save();
                 canvas.rotate(angle, cx, cy);
                 if (pos > 0) {
-                    canvas.drawText(text, width / 2.0F - textWidth + getPaddingLeft(), getPaddingTop(), mPaint);
+                    canvas.drawText(text, 0, length, width / 2.0F - textWidth + getPaddingLeft(), getPaddingTop(), mPaint);
                 } else {
-                    canvas.drawText(text, width / 2.0F + getPaddingLeft(), getPaddingTop(), mPaint);
+                    canvas.drawText(text, 0, length, width / 2.0F + getPaddingLeft(), getPaddingTop(), mPaint);
                 }
                 canvas.restore();
             }
@@ -278,4 +414,37 @@ public class NeedleView extends View {
         canvas.drawLine((float) (tipX + Math.cos(angleRad) * tickLength), (float) (tipY + Math.sin(angleRad) * tickLength), tipX, tipY, mPaint);
     }
 
+    private static class TickLabel {
+        final float pos;
+        char[] text = new char[16];
+        int length = 0;
+
+        TickLabel(float pos) {
+            this.pos = pos;
+        }
+
+        boolean contentEquals(String label) {
+            if (label.length() != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (text[i] != label.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean contentEquals(char[] label, int start, int count) {
+            if (count != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (text[i] != label[start + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
 }
@@ -20,11 +20,14 @@ package com.andryr.guitartuner;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.os.Bundle;
+import android.preference.ListPreference;
 import android.preference.Preference;
 import android.support.v4.app.NavUtils;
 import android.support.v7.app.ActionBar;
 import android.view.MenuItem;
 
+import java.util.List;
+
 public class SettingsActivity extends AppCompatPreferenceActivity {
 
 
@@ -33,7 +36,13 @@ public class SettingsActivity extends AppCompatPreferenceActivity {
     private SharedPreferences.OnSharedPreferenceChangeListener mOnPreferenceChangeListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
         @Override
         public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
-            if(key.equals(getString(R.string.pref_tuning_key)) || key.equals(getString(R.string.pref_dark_theme_key))) {
+            if(key.equals(getString(R.string.pref_tuning_key)) || key.equals(getString(R.string.pref_dark_theme_key))
+                    || key.equals(getString(R.string.pref_reference_pitch_key))) {
+                mShouldRestart = true;
+            }
+            if (key.equals(getString(R.string.pref_custom_tunings_key))) {
+                TuningRegistry.getInstance(SettingsActivity.this).reloadCustomTunings();
+                updateTuningEntries();
                 mShouldRestart = true;
             }
         }
@@ -44,6 +53,7 @@ public class SettingsActivity extends AppCompatPreferenceActivity {
         super.onCreate(savedInstanceState);
         setupActionBar();
         addPreferencesFromResource(R.xml.preferences);
+        updateTuningEntries();
         getPreferenceScreen().getSharedPreferences().registerOnSharedPreferenceChangeListener(mOnPreferenceChangeListener);
     }
 
@@ -53,6 +63,26 @@ public class SettingsActivity extends AppCompatPreferenceActivity {
         getPreferenceScreen().getSharedPreferences().unregisterOnSharedPreferenceChangeListener(mOnPreferenceChangeListener);
     }
 
+    private void updateTuningEntries() {
+        List<Tuning> tunings = TuningRegistry.getInstance(this).getTunings();
+        CharSequence[] entries = new CharSequence[tunings.size() + 1];
+        CharSequence[] values = new CharSequence[tunings.size() + 1];
+        for (int i = 0; i < tunings.size(); i++) {
+            entries[i] = tunings.get(i).getName();
+            values[i] = tunings.get(i).getName();
+        }
+        entries[tunings.size()] = getString(R.string.chromatic_tuning);
+        values[tunings.size()] = getString(R.string.chromatic_tuning_val);
+
+        ListPreference preference = (ListPreference) findPreference(getString(R.string.pref_tuning_key));
+        preference.setEntries(entries);
+        preference.setEntryValues(values);
+        // a custom tuning may have been removed
+        if (preference.findIndexOfValue(preference.getValue()) < 0) {
+            preference.setValue(getString(R.string.standard_tuning_val));
+        }
+    }
+
     private void setupActionBar() {
         ActionBar actionBar = getSupportActionBar();
         if (actionBar != null) {
@@ -17,14 +17,18 @@
 package com.andryr.guitartuner;
 
 import android.Manifest;
-import android.annotation.SuppressLint;
+import android.annotation.TargetApi;
 import android.content.DialogInterface;
 import android.content.pm.PackageManager;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.v4.app.ActivityCompat;
 import android.support.v7.app.AppCompatActivity;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
@@ -33,6 +37,12 @@ import android.view.WindowManager;
 import android.widget.ImageView;
 import android.widget.TextView;
 
+import com.andryr.guitartuner.engine.PitchDetectors;
+import com.andryr.guitartuner.engine.PitchMailbox;
+import com.andryr.guitartuner.engine.PitchResult;
+import com.andryr.guitartuner.engine.StrumMailbox;
+import com.andryr.guitartuner.engine.StrumResult;
+
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -46,11 +56,15 @@ public class TunerActivity extends AppCompatActivity {
     public static final String STATE_PITCH_INDEX = "pitch_index";
     public static final String STATE_LAST_FREQ = "last_freq";
     private static final int PERMISSION_REQUEST_RECORD_AUDIO = 443;
+    private static final long FALLBACK_FRAME_DELAY = 16;
+    // a string which was not heard for that long no longer shows its deviation
+    private static final long STRUM_DEVIATION_TIMEOUT = 3000;
 
 
     private Tuning mTuning;
     private AudioProcessor mAudioProcessor;
     private ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mHandler = new Handler();
     private NeedleView mNeedleView;
     private TuningView mTuningView;
     private TextView mFrequencyView;
@@ -60,6 +74,16 @@ public class TunerActivity extends AppCompatActivity {
     private int mPitchIndex;
     private float mLastFreq;
 
+    // the frequency view keeps a reference to the buffer of its formatter
+    private final FrequencyFormatter mFrequencyFormatter = new FrequencyFormatter();
+    private final FrequencyFormatter mPitchLabelFormatter = new FrequencyFormatter();
+
+    private final PitchMailbox mPitchMailbox = new PitchMailbox();
+    private final PitchUpdater mPitchUpdater = new PitchUpdater();
+    // sized for the tuning in onCreate
+    private StrumMailbox mStrumMailbox;
+    private StrumResult mStrumResult;
+
 
     @Override
     protected void onStart() {
@@ -74,6 +98,7 @@ public class TunerActivity extends AppCompatActivity {
         super.onStop();
         if (mProcessing) {
             mAudioProcessor.stop();
+            mPitchUpdater.stop();
             mProcessing = false;
         }
     }
@@ -129,44 +154,40 @@ public class TunerActivity extends AppCompatActivity {
 
 
         mAudioProcessor = new AudioProcessor();
+        float[] targets = new float[mTuning.pitches.length];
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = mTuning.pitches[i].frequency;
+        }
+        boolean strumMode = Preferences.getBoolean(this, getString(R.string.pref_strum_mode_key), false);
+        // strumming only makes sense for the few strings of an instrument
+        if (strumMode && !(mTuning instanceof ChromaticTuning)) {
+            mAudioProcessor.setStrumMode(targets, new AudioProcessor.StrumListener() {
+                @Override
+                public void onStrumAnalyzed(StrumResult result) {
+                    mStrumMailbox.publish(result);
+                }
+            });
+        } else {
+            mTuningView.clearDeviations();
+        }
         mAudioProcessor.init();
+        String detector = Preferences.getString(this, getString(R.string.pref_detector_key), getString(R.string.amdf_detector_val));
+        mAudioProcessor.setPitchDetector(PitchDetectors.create(detector));
+        String margin = Preferences.getString(this, getString(R.string.pref_range_margin_key), getString(R.string.range_margin_three_val));
+        mAudioProcessor.setFrequencyRange(mTuning.getLowestFrequency(), mTuning.getHighestFrequency(), Float.parseFloat(margin));
+        mAudioProcessor.setTracking(Preferences.getBoolean(this, getString(R.string.pref_tracking_key), true));
+        boolean lowPower = Preferences.getBoolean(this, getString(R.string.pref_low_power_key), false);
+        // the chromatic tuning has no strings to pick from
+        if (lowPower && !(mTuning instanceof ChromaticTuning)) {
+            mAudioProcessor.setStringTargets(targets, Float.parseFloat(margin));
+        }
         mAudioProcessor.setPitchDetectionListener(new AudioProcessor.PitchDetectionListener() {
             @Override
-            public void onPitchDetected(final float freq, double avgIntensity) {
-
-                final int index = mTuning.closestPitchIndex(freq);
-                final Pitch pitch = mTuning.pitches[index];
-                double interval = 1200 * Utils.log2(freq / pitch.frequency); // interval in cents
-                final float needlePos = (float) (interval / 100);
-                final boolean goodPitch = Math.abs(interval) < 5.0;
-                runOnUiThread(new Runnable() {
-                    @SuppressLint("DefaultLocale")
-                    @Override
-                    public void run() {
-                        mTuningView.setSelectedIndex(index, true);
-                        mNeedleView.setTickLabel(0.0F, String.format("%.02fHz", pitch.frequency));
-                        mNeedleView.animateTip(needlePos);
-                        mFrequencyView.setText(String.format("%.02fHz", freq));
-
-
-                        final View goodPitchView = findViewById(R.id.good_pitch_view);
-                        if (goodPitchView != null) {
-                            if (goodPitch) {
-                                if (goodPitchView.getVisibility() != View.VISIBLE) {
-                                    Utils.reveal(goodPitchView);
-                                }
-                            } else if (goodPitchView.getVisibility() == View.VISIBLE) {
-                                Utils.hide(goodPitchView);
-                            }
-                        }
-                    }
-                });
-
-                mPitchIndex = index;
-                mLastFreq = freq;
-
+            public void onPitchDetected(PitchResult result) {
+                mPitchMailbox.publish(result);
             }
         });
+        mPitchUpdater.start();
         mProcessing = true;
         mExecutor.execute(mAudioProcessor);
     }
@@ -178,7 +199,6 @@ public class TunerActivity extends AppCompatActivity {
         super.onPause();
     }
 
-    @SuppressLint("DefaultLocale")
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         Utils.setupActivityTheme(this);
@@ -186,10 +206,12 @@ public class TunerActivity extends AppCompatActivity {
         setContentView(R.layout.activity_main);
         getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
         mTuning = Tuning.getTuning(this, Preferences.getString(this, getString(R.string.pref_tuning_key), getString(R.string.standard_tuning_val)));
+        mStrumMailbox = new StrumMailbox(mTuning.pitches.length);
+        mStrumResult = new StrumResult(mTuning.pitches.length);
 
         mNeedleView = (NeedleView) findViewById(R.id.pitch_needle_view);
         mNeedleView.setTickLabel(-1.0F, "-100c");
-        mNeedleView.setTickLabel(0.0F, String.format("%.02fHz", mTuning.pitches[0].frequency));
+        showPitchLabel(mTuning.pitches[0]);
         mNeedleView.setTickLabel(1.0F, "+100c");
 
         int primaryTextColor = Utils.getAttrColor(this, android.R.attr.textColorPrimary);
@@ -199,7 +221,7 @@ public class TunerActivity extends AppCompatActivity {
 
 
         mFrequencyView = (TextView) findViewById(R.id.frequency_view);
-        mFrequencyView.setText(String.format("%.02fHz", mTuning.pitches[0].frequency));
+        showFrequency(mTuning.pitches[0].frequency);
 
         ImageView goodPitchView = (ImageView) findViewById(R.id.good_pitch_view);
         goodPitchView.setColorFilter(primaryTextColor);
@@ -215,17 +237,26 @@ public class TunerActivity extends AppCompatActivity {
         super.onSaveInstanceState(outState);
     }
 
-    @SuppressLint("DefaultLocale")
     @Override
     protected void onRestoreInstanceState(Bundle savedInstanceState) {
         super.onRestoreInstanceState(savedInstanceState);
         mNeedleView.setTipPos(savedInstanceState.getFloat(STATE_NEEDLE_POS));
         int pitchIndex = savedInstanceState.getInt(STATE_PITCH_INDEX);
-        mNeedleView.setTickLabel(0.0F, String.format("%.02fHz", mTuning.pitches[pitchIndex].frequency));
+        showPitchLabel(mTuning.pitches[pitchIndex]);
         mTuningView.setSelectedIndex(pitchIndex);
-        mFrequencyView.setText(String.format("%.02fHz", savedInstanceState.getFloat(STATE_LAST_FREQ)));
+        showFrequency(savedInstanceState.getFloat(STATE_LAST_FREQ));
+    }
+
+
+    private void showFrequency(float freq) {
+        int length = mFrequencyFormatter.format(freq);
+        mFrequencyView.setText(mFrequencyFormatter.getBuffer(), 0, length);
     }
 
+    private void showPitchLabel(Pitch pitch) {
+        int length = mPitchLabelFormatter.format(pitch.frequency);
+        mNeedleView.setTickLabel(0.0F, mPitchLabelFormatter.getBuffer(), 0, length);
+    }
 
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
@@ -245,4 +276,150 @@ public class TunerActivity extends AppCompatActivity {
     }
 
 
+    /**
+     * Shows the latest pitch published in mPitchMailbox, or the latest strum published in
+     * mStrumMailbox, once per display frame. However fast the results come, the UI thread does
+     * at most one update per frame, and the results published in between are never shown.
+     */
+    private class PitchUpdater implements Runnable {
+        private final PitchResult mResult = new PitchResult();
+        private final Tuning.Match mMatch = new Tuning.Match();
+        private FrameCallback mFrameCallback;
+        private boolean mRunning = false;
+        // uptime at which each string was last heard in a strum
+        private long[] mStrumTimes;
+
+        void start() {
+            if (mRunning) {
+                return;
+            }
+            mRunning = true;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN && mFrameCallback == null) {
+                mFrameCallback = new FrameCallback(this);
+            }
+            schedule();
+        }
+
+        void stop() {
+            mRunning = false;
+            if (mFrameCallback != null) {
+                mFrameCallback.cancel();
+            } else {
+                mHandler.removeCallbacks(this);
+            }
+        }
+
+        private void schedule() {
+            if (mFrameCallback != null) {
+                mFrameCallback.post();
+            } else {
+                // no Choreographer before Jelly Bean, poll at about the display rate instead
+                mHandler.postDelayed(this, FALLBACK_FRAME_DELAY);
+            }
+        }
+
+        @Override
+        public void run() {
+            if (!mRunning) {
+                return;
+            }
+            if (mPitchMailbox.poll(mResult)) {
+                show(mResult.getFrequency());
+            }
+            if (mStrumMailbox.poll(mStrumResult)) {
+                showStrum(mStrumResult);
+            }
+            expireStrum();
+            schedule();
+        }
+
+        /**
+         * Updates the strings heard in the strum, the others keep their last deviation for a
+         * while since they fade at their own pace.
+         */
+        private void showStrum(StrumResult result) {
+            if (mStrumTimes == null || mStrumTimes.length != result.getStringCount()) {
+                mStrumTimes = new long[result.getStringCount()];
+            }
+            long now = SystemClock.uptimeMillis();
+            for (int i = 0; i < result.getStringCount(); i++) {
+                if (result.isDetected(i)) {
+                    mTuningView.setDeviation(i, result.getCents(i));
+                    mStrumTimes[i] = now;
+                }
+            }
+        }
+
+        /**
+         * Hides the deviation of the strings which were not heard for a while, such as a
+         * string only picked up once from the harmonic of another one.
+         */
+        private void expireStrum() {
+            if (mStrumTimes == null) {
+                return;
+            }
+            long now = SystemClock.uptimeMillis();
+            for (int i = 0; i < mStrumTimes.length; i++) {
+                if (mStrumTimes[i] != 0 && now - mStrumTimes[i] > STRUM_DEVIATION_TIMEOUT) {
+                    mTuningView.clearDeviation(i);
+                    mStrumTimes[i] = 0;
+                }
+            }
+        }
+
+        private void show(float freq) {
+            mTuning.match(freq, mMatch);
+            final int index = mMatch.getIndex();
+            final Pitch pitch = mTuning.pitches[index];
+            final float interval = mMatch.getCents();
+            final float needlePos = (float) (interval / 100);
+            final boolean goodPitch = Math.abs(interval) < 5.0;
+
+            mTuningView.setSelectedIndex(index, true);
+            showPitchLabel(pitch);
+            mNeedleView.animateTip(needlePos);
+            showFrequency(freq);
+
+
+            final View goodPitchView = findViewById(R.id.good_pitch_view);
+            if (goodPitchView != null) {
+                if (goodPitch) {
+                    if (goodPitchView.getVisibility() != View.VISIBLE) {
+                        Utils.reveal(goodPitchView);
+                    }
+                } else if (goodPitchView.getVisibility() == View.VISIBLE) {
+                    Utils.hide(goodPitchView);
+                }
+            }
+
+            mPitchIndex = index;
+            mLastFreq = freq;
+        }
+    }
+
+    /**
+     * Runs a {@link PitchUpdater} on the next vsync, kept apart so that Choreographer is only
+     * loaded on Jelly Bean and above.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static class FrameCallback implements Choreographer.FrameCallback {
+        private final Runnable mRunnable;
+
+        FrameCallback(Runnable runnable) {
+            mRunnable = runnable;
+        }
+
+        void post() {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        void cancel() {
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mRunnable.run();
+        }
+    }
 }
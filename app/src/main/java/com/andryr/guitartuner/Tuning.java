@@ -18,105 +18,128 @@ package com.andryr.guitartuner;
 
 import android.content.Context;
 
-import java.lang.ref.PhantomReference;
-
 /**
  * Created by andry on 24/04/16.
  */
 public class Tuning {
-    String name;
-    Pitch[] pitches;
+    private static final double CENTS_PER_LN = 1200 / Math.log(2);
+
+    final String name;
+    final Pitch[] pitches;
+
+    // pitch indices sorted by frequency, and the boundaries between their catchment areas
+    private final int[] mSortedIndices;
+    private final float[] mBoundaries;
 
     public Tuning(String name, Pitch[] pitches) {
         this.name = name;
         this.pitches = pitches;
-    }
 
-    public Pitch closestPitch(float freq) {
-        Pitch closest = null;
-        float dist = Float.MAX_VALUE;
-        for (Pitch pitch : pitches) {
-            float d = Math.abs(freq - pitch.frequency);
-            if (d < dist) {
-                closest = pitch;
-                dist = d;
+        mSortedIndices = new int[pitches.length];
+        for (int i = 0; i < pitches.length; i++) {
+            int j = i;
+            while (j > 0 && pitches[mSortedIndices[j - 1]].frequency > pitches[i].frequency) {
+                mSortedIndices[j] = mSortedIndices[j - 1];
+                j--;
             }
+            mSortedIndices[j] = i;
+        }
+        // the closest pitch is the closest in cents, the boundary between two pitches is
+        // their geometric mean
+        mBoundaries = new float[Math.max(0, pitches.length - 1)];
+        for (int i = 0; i < mBoundaries.length; i++) {
+            float lower = pitches[mSortedIndices[i]].frequency;
+            float upper = pitches[mSortedIndices[i + 1]].frequency;
+            mBoundaries[i] = (float) Math.sqrt(lower * upper);
         }
-        return closest;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Pitch closestPitch(float freq) {
+        return pitches[closestPitchIndex(freq)];
     }
 
     public int closestPitchIndex(float freq) {
-        int index = -1;
-        float dist = Float.MAX_VALUE;
-        for (int i = 0; i < pitches.length; i++) {
-            Pitch pitch = pitches[i];
-            float d = Math.abs(freq - pitch.frequency);
-            if (d < dist) {
-                index = i;
-                dist = d;
+        int low = 0;
+        int high = mBoundaries.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (freq < mBoundaries[mid]) {
+                high = mid;
+            } else {
+                low = mid + 1;
             }
         }
-        return index;
+        return mSortedIndices[low];
     }
 
-    public static Tuning getTuning(Context context, String name) {
-        if (name.equals(context.getString(R.string.standard_tuning_val))) {
-            return new Tuning(name,
-                    new Pitch[]{
-                            new Pitch(82.41F, "E"),
-                            new Pitch(110.00F, "A"),
-                            new Pitch(146.83F, "D"),
-                            new Pitch(196.00F, "G"),
-                            new Pitch(246.94F, "B"),
-                            new Pitch(329.63F, "E"),
-                    });
-        }
-        else if (name.equals(context.getString(R.string.open_a_tuning_val))) {
-            return new Tuning(name,
-                    new Pitch[]{
-                            new Pitch(82.41F, "E"),
-                            new Pitch(110.00F, "A"),
-                            new Pitch(164.81F, "E"),
-                            new Pitch(220.00F, "A"),
-                            new Pitch(277.18F, "C"),
-                            new Pitch(329.63F, "E"),
-                    });
+    /**
+     * Finds the closest pitch and the interval to it in a single call.
+     *
+     * @param match receives the index of the closest pitch and the interval in cents, positive
+     *              if freq is sharp
+     */
+    public void match(float freq, Match match) {
+        int index = closestPitchIndex(freq);
+        match.index = index;
+        match.cents = cents(freq, pitches[index].frequency);
+    }
+
+    /**
+     * Interval between two frequencies in cents.
+     */
+    static float cents(float freq, float reference) {
+        if (!(freq > 0) || !(reference > 0)) {
+            return 0;
         }
-        else if (name.equals(context.getString(R.string.open_g_tuning_val))) {
-            return new Tuning(name,
-                    new Pitch[]{
-                            new Pitch(73.42F, "D"),
-                            new Pitch(98.00F, "G"),
-                            new Pitch(146.83F, "D"),
-                            new Pitch(196.00F, "G"),
-                            new Pitch(246.94F, "B"),
-                            new Pitch(293.66F, "D"),
-                    });
+        return (float) (CENTS_PER_LN * Math.log((double) freq / reference));
+    }
+
+    /**
+     * Closest pitch of a tuning to a frequency, see {@link #match(float, Match)}.
+     */
+    public static class Match {
+        int index;
+        float cents;
+
+        public int getIndex() {
+            return index;
         }
-        else if (name.equals(context.getString(R.string.open_d_tuning_val))) {
-            return new Tuning(name,
-                    new Pitch[]{
-                            new Pitch(73.42F, "D"),
-                            new Pitch(110.00F, "A"),
-                            new Pitch(146.83F, "D"),
-                            new Pitch(185.00F, "F"),
-                            new Pitch(220.00F, "A"),
-                            new Pitch(293.66F, "D"),
-                    });
+
+        public float getCents() {
+            return cents;
         }
-        else if (name.equals(context.getString(R.string.drop_d_tuning_val))) {
-            return new Tuning(name,
-                    new Pitch[]{
-                            new Pitch(73.42F, "D"),
-                            new Pitch(110.00F, "A"),
-                            new Pitch(146.83F, "D"),
-                            new Pitch(196.00F, "G"),
-                            new Pitch(246.94F, "B"),
-                            new Pitch(329.63F, "E"),
-                    });
+    }
+
+    /**
+     * @return the frequency of the lowest pitch to detect in Hz
+     */
+    public float getLowestFrequency() {
+        float lowest = Float.MAX_VALUE;
+        for (Pitch pitch : pitches) {
+            lowest = Math.min(lowest, pitch.frequency);
         }
-        return null;
+        return lowest;
     }
 
+    /**
+     * @return the frequency of the highest pitch to detect in Hz
+     */
+    public float getHighestFrequency() {
+        float highest = 0;
+        for (Pitch pitch : pitches) {
+            highest = Math.max(highest, pitch.frequency);
+        }
+        return highest;
+    }
 
+    /**
+     * @see TuningRegistry#getTuning(String)
+     */
+    public static Tuning getTuning(Context context, String name) {
+        return TuningRegistry.getInstance(context).getTuning(name);
+    }
 }
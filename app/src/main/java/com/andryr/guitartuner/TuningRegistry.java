@@ -0,0 +1,212 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The tunings known to the app, by name.
+ * <p>
+ * The tunings bundled in res/raw/tunings.txt are parsed on first use and kept for the life of
+ * the process, followed by the custom tunings of the user, which are written in the same
+ * format in a preference. The chromatic tuning depends on the reference pitch preference and
+ * is only rebuilt when it changes.
+ */
+public class TuningRegistry {
+
+    private static final String TAG = TuningRegistry.class.getCanonicalName();
+
+    private static final String NOTE_LETTERS = "CDEFGAB";
+    private static final int[] LETTER_SEMITONES = {0, 2, 4, 5, 7, 9, 11};
+
+    private static TuningRegistry sInstance;
+
+    private final Context mContext;
+    private final Map<String, Tuning> mTunings = new LinkedHashMap<>();
+    private final List<Tuning> mBundledTunings;
+    private ChromaticTuning mChromaticTuning;
+
+    private TuningRegistry(Context context) {
+        mContext = context;
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    context.getResources().openRawResource(R.raw.tunings), "UTF-8"));
+            try {
+                mBundledTunings = Collections.unmodifiableList(parseTunings(reader));
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("cannot read the bundled tunings", e);
+        }
+        loadTunings();
+    }
+
+    public static synchronized TuningRegistry getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new TuningRegistry(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * @return the tuning with the given name, the standard tuning if there is none
+     */
+    public synchronized Tuning getTuning(String name) {
+        if (name.equals(mContext.getString(R.string.chromatic_tuning_val))) {
+            float reference = Float.parseFloat(Preferences.getString(mContext,
+                    mContext.getString(R.string.pref_reference_pitch_key),
+                    mContext.getString(R.string.reference_pitch_default_val)));
+            if (mChromaticTuning == null || mChromaticTuning.getReference() != reference) {
+                mChromaticTuning = new ChromaticTuning(name, reference);
+            }
+            return mChromaticTuning;
+        }
+        Tuning tuning = mTunings.get(name);
+        return tuning != null ? tuning : mTunings.get(mContext.getString(R.string.standard_tuning_val));
+    }
+
+    /**
+     * @return the bundled tunings followed by the custom ones, without the chromatic tuning
+     */
+    public synchronized List<Tuning> getTunings() {
+        return new ArrayList<>(mTunings.values());
+    }
+
+    /**
+     * Reads the custom tunings again, after their preference changed.
+     */
+    public synchronized void reloadCustomTunings() {
+        mTunings.clear();
+        loadTunings();
+    }
+
+    private void loadTunings() {
+        for (Tuning tuning : mBundledTunings) {
+            mTunings.put(tuning.getName(), tuning);
+        }
+        String chromatic = mContext.getString(R.string.chromatic_tuning_val);
+        String custom = Preferences.getString(mContext, mContext.getString(R.string.pref_custom_tunings_key), "");
+        try {
+            BufferedReader reader = new BufferedReader(new StringReader(custom));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (isBlankOrComment(line)) {
+                    continue;
+                }
+                try {
+                    Tuning tuning = parseTuning(line);
+                    if (tuning.getName().equals(chromatic)) {
+                        // getTuning would always return the chromatic tuning instead
+                        Log.w(TAG, "ignoring custom tuning: " + chromatic + " is reserved");
+                    } else if (!mTunings.containsKey(tuning.getName())) {
+                        // the bundled tunings cannot be replaced
+                        mTunings.put(tuning.getName(), tuning);
+                    }
+                } catch (IllegalArgumentException e) {
+                    Log.w(TAG, "ignoring custom tuning: " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Parses one tuning per line, skipping blank lines and lines starting with #.
+     *
+     * @throws IllegalArgumentException if a line is not a valid tuning
+     */
+    static List<Tuning> parseTunings(BufferedReader reader) throws IOException {
+        List<Tuning> tunings = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!isBlankOrComment(line)) {
+                tunings.add(parseTuning(line));
+            }
+        }
+        return tunings;
+    }
+
+    private static boolean isBlankOrComment(String line) {
+        String trimmed = line.trim();
+        return trimmed.isEmpty() || trimmed.startsWith("#");
+    }
+
+    /**
+     * Parses a tuning such as "Drop D: D2 A2 D3 G3 B3 E4".
+     *
+     * @throws IllegalArgumentException if line is not a valid tuning
+     */
+    static Tuning parseTuning(String line) {
+        int colon = line.indexOf(':');
+        String name = colon > 0 ? line.substring(0, colon).trim() : "";
+        if (name.isEmpty()) {
+            throw new IllegalArgumentException("missing tuning name: " + line);
+        }
+        String[] notes = line.substring(colon + 1).trim().split("\\s+");
+        if (notes.length == 0 || notes[0].isEmpty()) {
+            throw new IllegalArgumentException("no notes in " + name);
+        }
+        Pitch[] pitches = new Pitch[notes.length];
+        for (int i = 0; i < notes.length; i++) {
+            pitches[i] = parsePitch(notes[i]);
+        }
+        return new Tuning(name, pitches);
+    }
+
+    /**
+     * Parses a note name with its octave, such as "E2", "F#3" or "Bb3", into an equal tempered
+     * pitch with A4 = 440 Hz, named without its octave.
+     */
+    static Pitch parsePitch(String note) {
+        int letter = NOTE_LETTERS.indexOf(Character.toUpperCase(note.charAt(0)));
+        if (letter < 0) {
+            throw new IllegalArgumentException("invalid note " + note);
+        }
+        int semitone = LETTER_SEMITONES[letter];
+        int pos = 1;
+        if (pos < note.length() && note.charAt(pos) == '#') {
+            semitone++;
+            pos++;
+        } else if (pos < note.length() && note.charAt(pos) == 'b') {
+            semitone--;
+            pos++;
+        }
+        int octave;
+        try {
+            octave = Integer.parseInt(note.substring(pos));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid octave in note " + note);
+        }
+        int midi = (octave + 1) * 12 + semitone;
+        float frequency = (float) (440 * Math.pow(2, (midi - 69) / 12.0));
+        String name = NOTE_LETTERS.charAt(letter) + note.substring(1, pos);
+        return new Pitch(frequency, name);
+    }
+}
@@ -25,10 +25,15 @@ import android.graphics.Rect;
 import android.util.AttributeSet;
 import android.view.View;
 
+import java.util.Arrays;
+
 /**
  * Created by andry on 26/04/16.
  */
 public class TuningView extends View {
+    private static final float IN_TUNE_CENTS = 5;
+    private static final float DEVIATION_TEXT_SCALE = 0.45f;
+
     private int mSelectedIndex;
     private Tuning mTuning;
     private float mTuningItemWidth;
@@ -38,6 +43,15 @@ public class TuningView extends View {
     private int mSelectedTextColor;
     private float mOffset = 0;
     private ValueAnimator mOffsetAnimator = null;
+    // position of each label within its item and height of its bounds, see layoutLabels()
+    private float[] mLabelLefts = new float[0];
+    private float[] mLabelHeights = new float[0];
+    // deviation of each string in strum mode, shown under its label
+    private Paint mDeviationPaint = new Paint();
+    private boolean[] mHasDeviation = new boolean[0];
+    private float[] mDeviations = new float[0];
+    private char[][] mDeviationTexts = new char[0][];
+    private int[] mDeviationLengths = new int[0];
 
 
     public TuningView(Context context) {
@@ -61,6 +75,8 @@ public class TuningView extends View {
         mSelectedTextColor = array.getColor(R.styleable.TuningView_selectedTextColor, 0);
         float textSize = array.getDimension(R.styleable.TuningView_textSize, 0);
         mPaint.setTextSize(textSize);
+        mDeviationPaint.setTextSize(textSize * DEVIATION_TEXT_SCALE);
+        mDeviationPaint.setTextAlign(Paint.Align.CENTER);
         mTuningItemWidth = array.getDimension(R.styleable.TuningView_itemWidth, 0);
         array.recycle();
     }
@@ -115,6 +131,8 @@ public class TuningView extends View {
 
     public void setTextSize(float textSize) {
         mPaint.setTextSize(textSize);
+        mDeviationPaint.setTextSize(textSize * DEVIATION_TEXT_SCALE);
+        layoutLabels();
     }
 
     public int getNormalTextColor() {
@@ -139,6 +157,9 @@ public class TuningView extends View {
 
     public void setTuning(Tuning tuning) {
         mTuning = tuning;
+        // the deviations were those of the previous tuning, even with as many strings
+        Arrays.fill(mHasDeviation, false);
+        layoutLabels();
     }
 
     public float getTuningItemWidth() {
@@ -147,6 +168,91 @@ public class TuningView extends View {
 
     public void setTuningItemWidth(float tuningItemWidth) {
         mTuningItemWidth = tuningItemWidth;
+        layoutLabels();
+    }
+
+    /**
+     * Shows the deviation of a string under its label, in whole cents. The view is only redrawn
+     * when the text or its in tune color changes.
+     */
+    public void setDeviation(int index, float cents) {
+        if (mHasDeviation[index] && Math.round(mDeviations[index]) == Math.round(cents)
+                && isInTune(mDeviations[index]) == isInTune(cents)) {
+            mDeviations[index] = cents;
+            return;
+        }
+        mHasDeviation[index] = true;
+        mDeviations[index] = cents;
+        mDeviationLengths[index] = formatCents(Math.round(cents), mDeviationTexts[index]);
+        invalidate();
+    }
+
+    /**
+     * Hides the deviation of a string.
+     */
+    public void clearDeviation(int index) {
+        if (mHasDeviation[index]) {
+            mHasDeviation[index] = false;
+            invalidate();
+        }
+    }
+
+    /**
+     * Hides the deviation of every string.
+     */
+    public void clearDeviations() {
+        for (int i = 0; i < mHasDeviation.length; i++) {
+            mHasDeviation[i] = false;
+        }
+        invalidate();
+    }
+
+    /**
+     * Writes the signed cents into buffer, which holds at least 5 chars.
+     *
+     * @return the number of chars written
+     */
+    static int formatCents(int cents, char[] buffer) {
+        int length = 0;
+        buffer[length++] = cents < 0 ? '-' : '+';
+        int value = Math.min(999, Math.abs(cents));
+        if (value >= 100) {
+            buffer[length++] = (char) ('0' + value / 100);
+        }
+        if (value >= 10) {
+            buffer[length++] = (char) ('0' + value / 10 % 10);
+        }
+        buffer[length++] = (char) ('0' + value % 10);
+        buffer[length++] = 'c';
+        return length;
+    }
+
+    private static boolean isInTune(float cents) {
+        return Math.abs(cents) < IN_TUNE_CENTS;
+    }
+
+    /**
+     * Measures the labels once, they only depend on the tuning, the text size and the item
+     * width.
+     */
+    private void layoutLabels() {
+        int count = mTuning != null ? mTuning.pitches.length : 0;
+        if (mLabelLefts.length != count) {
+            mLabelLefts = new float[count];
+            mLabelHeights = new float[count];
+            mHasDeviation = new boolean[count];
+            mDeviations = new float[count];
+            mDeviationTexts = new char[count][5];
+            mDeviationLengths = new int[count];
+        }
+        for (int i = 0; i < count; i++) {
+            String text = mTuning.pitches[i].name;
+            float textWidth = mPaint.measureText(text);
+            mPaint.getTextBounds(text, 0, text.length(), mTempRect);
+            mLabelLefts[i] = (mTuningItemWidth - textWidth) / 2f;
+            mLabelHeights[i] = mTempRect.height();
+        }
+        invalidate();
     }
 
     @Override
@@ -156,17 +262,31 @@ public class TuningView extends View {
 
         int height = getHeight();
 
+        // only the items overlapping the view are drawn
+        int first = 0;
+        int last = mTuning.pitches.length - 1;
+        if (mTuningItemWidth > 0) {
+            first = Math.max(first, (int) Math.floor(-mOffset / mTuningItemWidth));
+            last = Math.min(last, (int) Math.ceil((getWidth() - mOffset) / mTuningItemWidth));
+        }
 
-        for (int i = 0; i < mTuning.pitches.length; i++) {
+        for (int i = first; i <= last; i++) {
             if (i == mSelectedIndex) {
                 mPaint.setColor(mSelectedTextColor);
             } else {
                 mPaint.setColor(mNormalTextColor);
             }
-            String text = mTuning.pitches[i].name;
-            float textWidth = mPaint.measureText(text);
-            mPaint.getTextBounds(text, 0, text.length(), mTempRect);
-            canvas.drawText(text, mOffset + i * mTuningItemWidth + (mTuningItemWidth - textWidth) / 2f, (height + mTempRect.height()) / 2f, mPaint);
+            float baseline = (height + mLabelHeights[i]) / 2f;
+            canvas.drawText(mTuning.pitches[i].name, mOffset + i * mTuningItemWidth + mLabelLefts[i],
+                    baseline, mPaint);
+
+            if (mHasDeviation[i]) {
+                boolean inTune = isInTune(mDeviations[i]);
+                mDeviationPaint.setColor(inTune ? mSelectedTextColor : mNormalTextColor);
+                canvas.drawText(mDeviationTexts[i], 0, mDeviationLengths[i],
+                        mOffset + (i + 0.5f) * mTuningItemWidth, baseline + mDeviationPaint.getTextSize() * 1.5f,
+                        mDeviationPaint);
+            }
         }
 
 
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ChromaticTuningTest {
+
+    @Test
+    public void pitches_coverThePianoRange() {
+        ChromaticTuning tuning = new ChromaticTuning("Chromatic", 440f);
+        assertEquals(88, tuning.pitches.length);
+        assertEquals("A0", tuning.pitches[0].name);
+        assertEquals(27.5f, tuning.pitches[0].frequency, 1e-3f);
+        assertEquals("C4", tuning.pitches[39].name);
+        assertEquals(261.63f, tuning.pitches[39].frequency, 0.01f);
+        assertEquals("C8", tuning.pitches[87].name);
+        assertEquals(4186.01f, tuning.pitches[87].frequency, 0.01f);
+    }
+
+    @Test
+    public void match_roundsToNearestNoteFromReference() {
+        ChromaticTuning tuning = new ChromaticTuning("Chromatic", 442f);
+        Tuning.Match match = new Tuning.Match();
+
+        tuning.match(442f, match);
+        assertEquals("A4", tuning.pitches[match.getIndex()].name);
+        assertEquals(0f, match.getCents(), 1e-3f);
+
+        // 20 cents flat of E2 at A4 = 442 Hz
+        float e2 = (float) (442 * Math.pow(2, -29 / 12.0));
+        tuning.match((float) (e2 * Math.pow(2, -20 / 1200.0)), match);
+        assertEquals("E2", tuning.pitches[match.getIndex()].name);
+        assertEquals(-20f, match.getCents(), 1e-2f);
+        assertEquals(match.getIndex(), tuning.closestPitchIndex(e2));
+    }
+
+    @Test
+    public void match_staysWithinTheTable() {
+        ChromaticTuning tuning = new ChromaticTuning("Chromatic", 440f);
+        Tuning.Match match = new Tuning.Match();
+        tuning.match(10f, match);
+        assertEquals(0, match.getIndex());
+        tuning.match(10000f, match);
+        assertEquals(87, match.getIndex());
+    }
+}
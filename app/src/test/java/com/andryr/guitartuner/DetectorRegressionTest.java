@@ -0,0 +1,232 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner;
+
+import com.andryr.guitartuner.engine.PitchDetectors;
+import com.andryr.guitartuner.engine.PitchEngine;
+import com.andryr.guitartuner.engine.PitchResult;
+import com.andryr.guitartuner.engine.PluckedStringSource;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Every detector on synthetic plucks of every note of every bundled tuning, and of the
+ * chromatic range, configured as {@link AudioProcessor} configures the engine. Accuracy and
+ * speed are printed together so that an engine change can be judged on both.
+ * <p>
+ * The notes are generated from fixed seeds, so the limits are the current results with a
+ * little headroom; tighten them when a detector improves. Only the first 8 hops of a note,
+ * which do not fill a frame, and the first frame, which has nothing to be compared with, can't
+ * be reported: 14 out of 22 hops at most.
+ */
+public class DetectorRegressionTest {
+
+    private static final int SAMPLE_RATE = 44100;
+    private static final int HOP_SIZE = 1024;
+    private static final float RANGE_MARGIN = 3;
+    private static final int NOTE_FRAMES = SAMPLE_RATE / 2;
+    private static final float[] DETUNES = {-35, -12, 0, 9, 28};
+    private static final int CHROMATIC_STEP = 3;
+
+    private static List<Tuning> sTunings;
+
+    private static class Stats {
+        int notes;
+        int frames;
+        int detected;
+        int octaveErrors;
+        double absCents;
+        double maxAbsCents;
+        long nanos;
+
+        double detectionRate() {
+            return (double) detected / frames;
+        }
+
+        double octaveErrorRate() {
+            return detected > 0 ? (double) octaveErrors / detected : 0;
+        }
+
+        double meanAbsCents() {
+            return detected > octaveErrors ? absCents / (detected - octaveErrors) : 0;
+        }
+
+        double nanosPerFrame() {
+            return (double) nanos / frames;
+        }
+    }
+
+    @BeforeClass
+    public static void loadTunings() throws Exception {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream("src/main/res/raw/tunings.txt"), "UTF-8"));
+        try {
+            sTunings = TuningRegistry.parseTunings(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void amdf() {
+        Stats stats = run(PitchDetectors.AMDF);
+        assertAccurate(stats, 0.6, 0, 0.5);
+    }
+
+    @Test
+    public void incrementalAmdf() {
+        Stats stats = run(PitchDetectors.INCREMENTAL_AMDF);
+        assertAccurate(stats, 0.6, 0, 0.5);
+    }
+
+    @Test
+    public void autocorrelation() {
+        Stats stats = run(PitchDetectors.AUTOCORRELATION);
+        assertAccurate(stats, 0.6, 0, 1.5);
+    }
+
+    @Test
+    public void yin() {
+        Stats stats = run(PitchDetectors.YIN);
+        assertAccurate(stats, 0.6, 0, 1.5);
+    }
+
+    @Test
+    public void mcleod() {
+        Stats stats = run(PitchDetectors.MCLEOD);
+        assertAccurate(stats, 0.6, 0, 0.5);
+    }
+
+    @Test
+    public void amdfChromatic() {
+        Stats stats = runChromatic(PitchDetectors.AMDF);
+        assertAccurate(stats, 0.55, 0, 0.75);
+    }
+
+    @Test
+    public void incrementalAmdfChromatic() {
+        Stats stats = runChromatic(PitchDetectors.INCREMENTAL_AMDF);
+        assertAccurate(stats, 0.55, 0, 0.75);
+    }
+
+    @Test
+    public void autocorrelationChromatic() {
+        Stats stats = runChromatic(PitchDetectors.AUTOCORRELATION);
+        assertAccurate(stats, 0.55, 0.005, 0.75);
+    }
+
+    @Test
+    public void yinChromatic() {
+        Stats stats = runChromatic(PitchDetectors.YIN);
+        assertAccurate(stats, 0.55, 0, 3);
+    }
+
+    @Test
+    public void mcleodChromatic() {
+        Stats stats = runChromatic(PitchDetectors.MCLEOD);
+        assertAccurate(stats, 0.55, 0, 0.5);
+    }
+
+    private static void assertAccurate(Stats stats, double minDetectionRate, double maxOctaveErrorRate,
+                                       double maxMeanAbsCents) {
+        assertTrue("detection rate " + stats.detectionRate(), stats.detectionRate() >= minDetectionRate);
+        assertTrue("octave errors " + stats.octaveErrorRate(), stats.octaveErrorRate() <= maxOctaveErrorRate);
+        assertTrue("mean error " + stats.meanAbsCents(), stats.meanAbsCents() <= maxMeanAbsCents);
+    }
+
+    private static Stats run(String detector) {
+        Stats stats = new Stats();
+        int note = 0;
+        for (Tuning tuning : sTunings) {
+            for (Pitch pitch : tuning.pitches) {
+                pluck(stats, detector, tuning, pitch.frequency, note++);
+            }
+        }
+        print(detector, stats);
+        return stats;
+    }
+
+    /**
+     * Every third note of the chromatic tuning's detection range, with the range the app uses
+     * for it.
+     */
+    private static Stats runChromatic(String detector) {
+        ChromaticTuning tuning = new ChromaticTuning("chromatic", ChromaticTuning.DEFAULT_REFERENCE);
+        Stats stats = new Stats();
+        int note = 0;
+        for (int i = tuning.closestPitchIndex(tuning.getLowestFrequency());
+             i <= tuning.closestPitchIndex(tuning.getHighestFrequency()); i += CHROMATIC_STEP) {
+            pluck(stats, detector, tuning, tuning.pitches[i].frequency, note++);
+        }
+        print(detector + " chromatic", stats);
+        return stats;
+    }
+
+    private static void pluck(Stats stats, String detector, Tuning tuning, float frequency, int note) {
+        PitchEngine engine = new PitchEngine();
+        engine.setDetector(PitchDetectors.create(detector));
+        engine.setTracking(true);
+        engine.setFrequencyRange(tuning.getLowestFrequency(), tuning.getHighestFrequency(), RANGE_MARGIN);
+
+        PluckedStringSource source = new PluckedStringSource(frequency, SAMPLE_RATE, NOTE_FRAMES, note);
+        source.setDetune(DETUNES[note % DETUNES.length]);
+        // low strings are thicker and stiffer
+        source.setStiffness(frequency < 100 ? 0.3f : 0.1f);
+        source.setDecay(4);
+        source.setNoise(0.01f);
+        source.start();
+        float expected = source.getFrequency();
+
+        short[] hop = new short[HOP_SIZE];
+        int read;
+        while ((read = source.read(hop, 0, HOP_SIZE)) > 0) {
+            long start = System.nanoTime();
+            PitchResult result = engine.processHop(hop, read, SAMPLE_RATE);
+            stats.nanos += System.nanoTime() - start;
+            stats.frames++;
+            if (result.isDetected()) {
+                stats.detected++;
+                double cents = 1200 * Math.log(result.getFrequency() / expected) / Math.log(2);
+                if (Math.abs(cents) > 600) {
+                    stats.octaveErrors++;
+                } else {
+                    stats.absCents += Math.abs(cents);
+                    stats.maxAbsCents = Math.max(stats.maxAbsCents, Math.abs(cents));
+                }
+            }
+        }
+        source.stop();
+        stats.notes++;
+    }
+
+    private static void print(String name, Stats stats) {
+        System.out.println(String.format(Locale.ROOT,
+                "%-26s %4d notes %6d frames: detected %5.1f%%, octave errors %5.2f%%, mean %5.2f cents,"
+                        + " max %6.2f cents, %8.0f ns/frame",
+                name, stats.notes, stats.frames, 100 * stats.detectionRate(), 100 * stats.octaveErrorRate(),
+                stats.meanAbsCents(), stats.maxAbsCents, stats.nanosPerFrame()));
+    }
+}
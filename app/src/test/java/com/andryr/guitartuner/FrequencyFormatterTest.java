@@ -0,0 +1,48 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+public class FrequencyFormatterTest {
+
+    @Test
+    public void format_matchesStringFormat() {
+        float[] freqs = {0f, 0.004f, 0.5f, 9.999f, 73.42f, 82.4069f, 110f, 329.628f, 440.005f, 1234.5f, -5.25f};
+        for (Locale locale : new Locale[]{Locale.US, Locale.FRANCE}) {
+            FrequencyFormatter formatter = new FrequencyFormatter(locale);
+            for (float freq : freqs) {
+                int length = formatter.format(freq);
+                assertEquals(String.format(locale, "%.02fHz", freq), new String(formatter.getBuffer(), 0, length));
+            }
+        }
+    }
+
+    @Test
+    public void format_reusesBuffer() {
+        FrequencyFormatter formatter = new FrequencyFormatter(Locale.US);
+        char[] buffer = formatter.getBuffer();
+        formatter.format(1234.56f);
+        formatter.format(82.41f);
+        assertSame(buffer, formatter.getBuffer());
+        assertEquals("82.41Hz", formatter.toString());
+    }
+}
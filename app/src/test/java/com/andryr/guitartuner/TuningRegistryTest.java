@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TuningRegistryTest {
+
+    @Test
+    public void parsePitch_handlesAccidentalsAndOctaves() {
+        Pitch e2 = TuningRegistry.parsePitch("E2");
+        assertEquals("E", e2.name);
+        assertEquals(82.41f, e2.frequency, 0.01f);
+
+        assertEquals(440f, TuningRegistry.parsePitch("A4").frequency, 1e-3f);
+        assertEquals(277.18f, TuningRegistry.parsePitch("C#4").frequency, 0.01f);
+        assertEquals("Bb", TuningRegistry.parsePitch("Bb3").name);
+        assertEquals(TuningRegistry.parsePitch("A#3").frequency, TuningRegistry.parsePitch("Bb3").frequency, 0f);
+        assertEquals(30.87f, TuningRegistry.parsePitch("B0").frequency, 0.01f);
+    }
+
+    @Test
+    public void parseTuning_readsNameAndNotes() {
+        Tuning tuning = TuningRegistry.parseTuning(" Drop D :  D2 A2 D3 G3 B3 E4 ");
+        assertEquals("Drop D", tuning.getName());
+        assertEquals(6, tuning.pitches.length);
+        assertEquals(73.42f, tuning.pitches[0].frequency, 0.01f);
+        assertEquals(329.63f, tuning.pitches[5].frequency, 0.01f);
+    }
+
+    @Test
+    public void parseTuning_rejectsInvalidLines() {
+        String[] lines = {"no notes:", ": E2 A2", "Standard E2 A2", "Bad: H2", "Bad: E", "Bad: Ex2"};
+        for (String line : lines) {
+            try {
+                TuningRegistry.parseTuning(line);
+                fail(line);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void bundledTunings_areValid() throws Exception {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream("src/main/res/raw/tunings.txt"), "UTF-8"));
+        List<Tuning> tunings;
+        try {
+            tunings = TuningRegistry.parseTunings(reader);
+        } finally {
+            reader.close();
+        }
+        // the default tuning, also returned for unknown names
+        Tuning standard = null;
+        for (Tuning tuning : tunings) {
+            if (tuning.getName().equals("Standard")) {
+                standard = tuning;
+            }
+        }
+        assertNotNull(standard);
+        assertEquals(82.41f, standard.pitches[0].frequency, 0.01f);
+        for (int i = 0; i < tunings.size(); i++) {
+            for (int j = i + 1; j < tunings.size(); j++) {
+                assertNotEquals(tunings.get(i).getName(), tunings.get(j).getName());
+            }
+        }
+    }
+}
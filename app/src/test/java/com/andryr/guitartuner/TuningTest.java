@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TuningTest {
+
+    private static final Tuning DROP_D = new Tuning("Drop D", new Pitch[]{
+            new Pitch(73.42F, "D"),
+            new Pitch(110.00F, "A"),
+            new Pitch(146.83F, "D"),
+            new Pitch(196.00F, "G"),
+            new Pitch(246.94F, "B"),
+            new Pitch(329.63F, "E"),
+    });
+
+    private static int closestInCents(Tuning tuning, float freq) {
+        int closest = -1;
+        double distance = Double.MAX_VALUE;
+        for (int i = 0; i < tuning.pitches.length; i++) {
+            double d = Math.abs(Math.log(freq / tuning.pitches[i].frequency));
+            if (d < distance) {
+                closest = i;
+                distance = d;
+            }
+        }
+        return closest;
+    }
+
+    @Test
+    public void closestPitchIndex_isClosestInCents() {
+        for (float freq = 40; freq < 700; freq += 0.37f) {
+            assertEquals(freq + "Hz", closestInCents(DROP_D, freq), DROP_D.closestPitchIndex(freq));
+        }
+    }
+
+    @Test
+    public void closestPitchIndex_acceptsUnsortedPitches() {
+        Tuning tuning = new Tuning("unsorted", new Pitch[]{
+                new Pitch(329.63F, "E"),
+                new Pitch(82.41F, "E"),
+                new Pitch(196.00F, "G"),
+        });
+        assertEquals(1, tuning.closestPitchIndex(60));
+        assertEquals(2, tuning.closestPitchIndex(200));
+        assertEquals(0, tuning.closestPitchIndex(1000));
+    }
+
+    @Test
+    public void match_givesCents() {
+        Tuning.Match match = new Tuning.Match();
+        for (float freq = 40; freq < 700; freq += 0.37f) {
+            DROP_D.match(freq, match);
+            double expected = 1200 * Math.log(freq / DROP_D.pitches[match.getIndex()].frequency) / Math.log(2);
+            assertEquals(freq + "Hz", expected, match.getCents(), 1e-3);
+        }
+    }
+}
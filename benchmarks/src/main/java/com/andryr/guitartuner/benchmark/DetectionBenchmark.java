@@ -0,0 +1,121 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.andryr.guitartuner.benchmark;
+
+import com.andryr.guitartuner.engine.PitchDetector;
+import com.andryr.guitartuner.engine.PitchDetectors;
+import com.andryr.guitartuner.engine.PitchEngine;
+import com.andryr.guitartuner.engine.PitchProcessor;
+import com.andryr.guitartuner.engine.PitchResult;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+
+/**
+ * Cost of the detection kernels for one frame, at every sample rate the app may record at and
+ * for every detector. The detectors are given the window the engine uses for a frame of that
+ * size, and {@link #processHop} streams hops the way {@link PitchProcessor} does.
+ * The subclasses only choose how the results are reported.
+ *
+ * @see GateBenchmark for the work which does not depend on the detector
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public abstract class DetectionBenchmark {
+
+    private static final float MIN_FREQ = PitchEngine.DEFAULT_MIN_FREQ;
+    private static final float MAX_FREQ = PitchEngine.DEFAULT_MAX_FREQ;
+    private static final int HOP_SIZE = PitchProcessor.DEFAULT_HOP_SIZE;
+    // frames streamed by processHop before starting over
+    private static final int STREAM_FRAMES = 4;
+
+    @Param({"44100", "22050", "16000", "11025", "8000"})
+    public int sampleRate;
+
+    @Param({"2048", "4096", "8192"})
+    public int frameSize;
+
+    @Param({PitchDetectors.AMDF, PitchDetectors.AUTOCORRELATION, PitchDetectors.YIN, PitchDetectors.MCLEOD,
+            PitchDetectors.INCREMENTAL_AMDF})
+    public String detector;
+
+    private short[] mFrame;
+    private short[] mStream;
+    private short[] mHop;
+    private int mStreamPos;
+    private PitchDetector mDetector;
+    private PitchEngine mEngine;
+    private PitchEngine mStreamingEngine;
+    private PitchEngine mLowPowerEngine;
+
+    @Setup
+    public void setup() {
+        mFrame = Signals.pluckedString(110f, sampleRate, frameSize, new Random(42));
+        mStream = Signals.pluckedString(110f, sampleRate, frameSize * STREAM_FRAMES, new Random(42));
+        mHop = new short[HOP_SIZE];
+        mStreamPos = 0;
+        mDetector = PitchDetectors.create(detector);
+        mEngine = createEngine();
+        mStreamingEngine = createEngine();
+        mStreamingEngine.setFrameSize(frameSize);
+        mLowPowerEngine = createEngine();
+        mLowPowerEngine.setStringTargets(Signals.STANDARD_TUNING, 3);
+    }
+
+    @Benchmark
+    public float getPitch() {
+        return mDetector.getPitch(mFrame, PitchEngine.windowSize(frameSize), frameSize, sampleRate, MIN_FREQ,
+                MAX_FREQ);
+    }
+
+    @Benchmark
+    public PitchResult process() {
+        return mEngine.process(mFrame, frameSize, sampleRate);
+    }
+
+    @Benchmark
+    public PitchResult processHop() {
+        if (mStreamPos + HOP_SIZE > mStream.length) {
+            mStreamPos = 0;
+        }
+        System.arraycopy(mStream, mStreamPos, mHop, 0, HOP_SIZE);
+        mStreamPos += HOP_SIZE;
+        return mStreamingEngine.processHop(mHop, HOP_SIZE, sampleRate);
+    }
+
+    @Benchmark
+    public PitchResult processLowPower() {
+        return mLowPowerEngine.process(mFrame, frameSize, sampleRate);
+    }
+
+    private PitchEngine createEngine() {
+        PitchEngine engine = new PitchEngine();
+        engine.setDetector(PitchDetectors.create(detector));
+        return engine;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner.benchmark;
+
+import com.andryr.guitartuner.engine.GoertzelFilterBank;
+import com.andryr.guitartuner.engine.PitchEngine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the work the engine does on every frame whatever the detector: the intensity and
+ * zero crossing gates, and the string selection of the low power mode. Reported in ns/frame.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GateBenchmark {
+
+    @Param({"44100", "22050", "16000", "11025", "8000"})
+    public int sampleRate;
+
+    @Param({"2048", "4096", "8192"})
+    public int frameSize;
+
+    private short[] mFrame;
+    private GoertzelFilterBank mFilterBank;
+
+    @Setup
+    public void setup() {
+        mFrame = Signals.pluckedString(110f, sampleRate, frameSize, new Random(42));
+        mFilterBank = new GoertzelFilterBank(Signals.STANDARD_TUNING);
+    }
+
+    @Benchmark
+    public double averageIntensity() {
+        return PitchEngine.averageIntensity(mFrame, frameSize);
+    }
+
+    @Benchmark
+    public int zeroCrossingCount() {
+        return PitchEngine.zeroCrossingCount(mFrame, frameSize);
+    }
+
+    @Benchmark
+    public int selectString() {
+        return mFilterBank.selectString(mFrame, frameSize, sampleRate);
+    }
+}
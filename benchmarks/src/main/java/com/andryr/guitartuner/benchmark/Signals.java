@@ -0,0 +1,50 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.andryr.guitartuner.benchmark;
+
+import java.util.Random;
+
+/**
+ * Test signals for the benchmarks.
+ */
+class Signals {
+
+    static final float[] STANDARD_TUNING = {82.41f, 110f, 146.83f, 196f, 246.94f, 329.63f};
+
+    private Signals() {
+    }
+
+    /**
+     * A decaying harmonic tone with a bit of noise, roughly what the microphone picks up from
+     * a plucked string.
+     */
+    static short[] pluckedString(float freq, int sampleRate, int frames, Random random) {
+        short[] data = new short[frames];
+        for (int i = 0; i < frames; i++) {
+            double t = (double) i / sampleRate;
+            double sample = 0;
+            for (int harmonic = 1; harmonic <= 6; harmonic++) {
+                sample += Math.sin(2 * Math.PI * freq * harmonic * t) / harmonic;
+            }
+            sample *= Math.exp(-2 * t);
+            sample += 0.005 * random.nextGaussian();
+            data[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, 6000 * sample));
+        }
+        return data;
+    }
+}
@@ -0,0 +1,405 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner.engine;
+
+/**
+ * Average magnitude difference function. The lags between sampleRate / maxFreq and
+ * sampleRate / minFreq are evaluated by comparing the first windowSize samples with the
+ * samples one lag later. The dips of the function are V shaped, the minimum is refined by
+ * finding the vertex of the V through the sums around it. The window is shortened if the
+ * frame can't hold it and the longest lag.
+ * <p>
+ * At high sample rates the search is coarse to fine: every lag is first evaluated on a copy
+ * of the frame decimated by up to 8 (averaging consecutive samples as a crude low-pass), as
+ * long as the decimated signal keeps {@link #MIN_SAMPLES_PER_PERIOD} samples per period of
+ * the highest frequency searched. Then only the lags around the coarse dips reasonably close
+ * to the deepest one are evaluated at full resolution.
+ * <p>
+ * Every multiple of the period is a dip about as deep as the period itself, so the period is
+ * the first dip close to the deepest one, within a tenth of the way to the mean difference,
+ * rather than the deepest one. The depths compared are those of the vertices, as a dip
+ * sampled away from its vertex looks shallower than it is.
+ * <p>
+ * When tracking, only the lags within a quarter of a semitone of the expected period are evaluated.
+ * The result is kept if their minimum is a dip deep enough compared to the signal level and
+ * the lag of half the period does not show a dip as well, which would mean the note went up
+ * an octave.
+ */
+public class AmdfDetector implements TrackingPitchDetector {
+
+    public static final int DEFAULT_MAX_DECIMATION = 8;
+
+    public static final int MIN_SAMPLES_PER_PERIOD = 10;
+
+    // the decimated signal must still resolve a few harmonics of the lowest notes
+    private static final int MIN_DECIMATED_RATE = 5000;
+    // how close to the deepest dip the period must be, relative to the mean difference
+    private static final float CANDIDATE_TOLERANCE = 0.1f;
+    private static final float COARSE_TOLERANCE = 0.3f;
+    private static final float TRACKING_SPAN = 1.015f;
+    // deepest minimum accepted when tracking, relative to the sum of uncorrelated samples
+    private static final float TRACKING_MAX_DEPTH = 0.3f;
+
+    private final int mMaxDecimation;
+    private int[] mDecimated;
+    private int[] mCoarseSums;
+    private int[] mCandidates;
+    private float mMeanDifference;
+    private int[] mSums;
+    private float mConfidence;
+
+    public AmdfDetector() {
+        this(DEFAULT_MAX_DECIMATION);
+    }
+
+    /**
+     * @param maxDecimation highest decimation factor of the coarse search, 1 evaluates every
+     *                      lag at full resolution
+     */
+    public AmdfDetector(int maxDecimation) {
+        mMaxDecimation = maxDecimation;
+    }
+
+    @Override
+    public float getPitch(short[] data, int windowSize, int frames, float sampleRate, float minFreq, float maxFreq) {
+        int firstLag = firstLag(sampleRate, maxFreq);
+        int lastLag = lastLag(sampleRate, minFreq);
+        // the lag after the last one is needed for the interpolation
+        windowSize = Math.min(windowSize, frames - lastLag - 1);
+        mConfidence = 0;
+        if (windowSize <= 0 || firstLag > lastLag) {
+            return 0;
+        }
+        final int[] sums = sums(lastLag + 2);
+
+        int factor = decimationFactor(sampleRate, maxFreq, windowSize, mMaxDecimation);
+        if (factor > 1) {
+            int candidates = coarseSearch(data, windowSize, frames, factor, firstLag, lastLag);
+            return fineSearch(data, windowSize, sampleRate, firstLag, lastLag, factor, mCandidates, candidates,
+                    mMeanDifference);
+        }
+
+        int minSum = Integer.MAX_VALUE;
+        int minSumLag = 0;
+        long totalSum = 0;
+        int lags = 0;
+        for (int lag = firstLag; lag <= lastLag; lag++) {
+            int sum = sum(data, windowSize, lag);
+
+            sums[lag] = sum;
+            totalSum += sum;
+            lags++;
+
+            if (sum < minSum) {
+                minSum = sum;
+                minSumLag = lag;
+            }
+        }
+        mConfidence = totalSum > 0 ? Math.max(0, 1 - (float) minSum * lags / totalSum) : 0;
+        minSumLag = firstDip(sums, firstLag, lastLag, minSumLag, totalSum / lags);
+        return interpolate(data, windowSize, sampleRate, minSumLag, firstLag, lastLag);
+    }
+
+    /**
+     * The fine search of {@link #getPitch}, for coarse candidates found by the caller, such as
+     * a detector which keeps the coarse sums of a stream up to date.
+     *
+     * @param factor         decimation factor of the coarse lags
+     * @param candidates     coarse lags in increasing order, overwritten
+     * @param count          number of candidates
+     * @param meanDifference mean difference between a coarse sample and a lagged one
+     * @return the pitch in Hz, 0 if the frame is too short
+     */
+    float refinePitch(short[] data, int windowSize, int frames, float sampleRate, float minFreq, float maxFreq,
+                      int factor, int[] candidates, int count, float meanDifference) {
+        int firstLag = firstLag(sampleRate, maxFreq);
+        int lastLag = lastLag(sampleRate, minFreq);
+        windowSize = Math.min(windowSize, frames - lastLag - 1);
+        mConfidence = 0;
+        if (windowSize <= 0 || firstLag > lastLag) {
+            return 0;
+        }
+        sums(lastLag + 2);
+        return fineSearch(data, windowSize, sampleRate, firstLag, lastLag, factor, candidates, count,
+                meanDifference);
+    }
+
+    /**
+     * Evaluates the lags around every coarse candidate at full resolution, the period is the
+     * first candidate close enough to the deepest one.
+     */
+    private float fineSearch(short[] data, int windowSize, float sampleRate, int firstLag, int lastLag, int factor,
+                             int[] candidates, int count, float meanDifference) {
+        final int[] sums = mSums;
+        long minDepth = Long.MAX_VALUE;
+        for (int c = 0; c < count; c++) {
+            int coarseLag = candidates[c];
+            int from = Math.max(firstLag, (coarseLag - 1) * factor);
+            int to = Math.min(lastLag, (coarseLag + 1) * factor);
+            int candidateMinSum = Integer.MAX_VALUE;
+            int candidateMinSumLag = from;
+            // with the neighbours of the range, in case the minimum is on its edge
+            for (int lag = from - 1; lag <= to + 1; lag++) {
+                int sum = sum(data, windowSize, lag);
+                sums[lag] = sum;
+                if (lag >= from && lag <= to && sum < candidateMinSum) {
+                    candidateMinSum = sum;
+                    candidateMinSumLag = lag;
+                }
+            }
+            candidates[c] = candidateMinSumLag;
+            minDepth = Math.min(minDepth, vertexSum(sums, candidateMinSumLag));
+        }
+        long meanSum = (long) (meanDifference * windowSize);
+        long threshold = minDepth + (long) (CANDIDATE_TOLERANCE * (meanSum - minDepth));
+        int minSumLag = candidates[0];
+        for (int c = 0; c < count; c++) {
+            if (vertexSum(sums, candidates[c]) <= threshold) {
+                minSumLag = candidates[c];
+                break;
+            }
+        }
+        return interpolate(data, windowSize, sampleRate, minSumLag, minSumLag - 1, minSumLag + 1);
+    }
+
+    /**
+     * Refines a minimum by interpolation, evaluating its neighbours if they are outside of the
+     * lags already in mSums.
+     */
+    private float interpolate(short[] data, int windowSize, float sampleRate, int minSumLag, int evaluatedFrom,
+                              int evaluatedTo) {
+        final int[] sums = mSums;
+        if (minSumLag - 1 < evaluatedFrom) {
+            sums[minSumLag - 1] = sum(data, windowSize, minSumLag - 1);
+        }
+        if (minSumLag + 1 > evaluatedTo) {
+            sums[minSumLag + 1] = sum(data, windowSize, minSumLag + 1);
+        }
+
+        return sampleRate / (minSumLag + vertexOffset(sums, minSumLag));
+    }
+
+    @Override
+    public float trackPitch(short[] data, int windowSize, int frames, float sampleRate, float expectedFreq,
+                            float minFreq, float maxFreq) {
+        mConfidence = 0;
+        int firstLag = (int) (sampleRate / Math.min(maxFreq, expectedFreq * TRACKING_SPAN));
+        int lastLag = (int) Math.ceil(sampleRate / Math.max(minFreq, expectedFreq / TRACKING_SPAN));
+        windowSize = Math.min(windowSize, frames - lastLag);
+        // the lags next to the minimum are needed to tell a dip from a slope
+        if (firstLag < 3 || lastLag - firstLag < 2 || windowSize <= 0) {
+            return 0;
+        }
+
+        final int[] sums = sums(lastLag + 1);
+        int minSum = Integer.MAX_VALUE;
+        int minSumLag = 0;
+        for (int lag = firstLag; lag <= lastLag; lag++) {
+            int sum = sum(data, windowSize, lag);
+            sums[lag] = sum;
+            if (sum < minSum) {
+                minSum = sum;
+                minSumLag = lag;
+            }
+        }
+        if (minSumLag == firstLag || minSumLag == lastLag) {
+            return 0;
+        }
+
+        // two uncorrelated samples differ by about the sum of their magnitudes
+        long reference = 0;
+        for (int i = 0; i < windowSize; i++) {
+            reference += Math.abs(data[i]);
+        }
+        float maxSum = TRACKING_MAX_DEPTH * 2 * reference;
+        if (reference == 0 || minSum > maxSum) {
+            return 0;
+        }
+        int halfLag = minSumLag / 2;
+        for (int lag = halfLag; lag <= halfLag + 1; lag++) {
+            if (sum(data, windowSize, lag) <= maxSum) {
+                return 0;
+            }
+        }
+        mConfidence = 1 - minSum / (2f * reference);
+
+        return sampleRate / (minSumLag + vertexOffset(sums, minSumLag));
+    }
+
+    @Override
+    public float getConfidence() {
+        return mConfidence;
+    }
+
+    private int[] sums(int minLength) {
+        if (mSums == null || mSums.length < minLength) {
+            mSums = new int[minLength];
+        }
+        return mSums;
+    }
+
+    static int firstLag(float sampleRate, float maxFreq) {
+        return Math.max(2, (int) (sampleRate / maxFreq));
+    }
+
+    static int lastLag(float sampleRate, float minFreq) {
+        return (int) (sampleRate / minFreq);
+    }
+
+    /**
+     * @return the highest decimation, up to maxDecimation, which keeps
+     * {@link #MIN_SAMPLES_PER_PERIOD} samples per period of maxFreq
+     */
+    static int decimationFactor(float sampleRate, float maxFreq, int windowSize, int maxDecimation) {
+        float minRate = Math.max(MIN_DECIMATED_RATE, MIN_SAMPLES_PER_PERIOD * maxFreq);
+        int factor = 1;
+        while (factor < maxDecimation && sampleRate / (factor * 2) >= minRate) {
+            factor *= 2;
+        }
+        // the coarse search needs a few samples to work with
+        while (factor > 1 && windowSize / factor < 16) {
+            factor /= 2;
+        }
+        return factor;
+    }
+
+    /**
+     * Evaluates every lag on the decimated frame and stores the candidates for the fine search
+     * in mCandidates, in decimated samples and increasing order. The mean difference between a
+     * decimated sample and a lagged one is stored in mMeanDifference.
+     *
+     * @return the number of candidates
+     */
+    private int coarseSearch(short[] data, int windowSize, int frames, int factor, int firstLag, int lastLag) {
+        final int decimatedFrames = frames / factor;
+        int firstCoarseLag = Math.max(1, firstLag / factor);
+        int lastCoarseLag = (lastLag + factor - 1) / factor;
+        final int decimatedWindow = Math.min(windowSize / factor, decimatedFrames - lastCoarseLag);
+        if (mDecimated == null || mDecimated.length < decimatedFrames) {
+            mDecimated = new int[decimatedFrames];
+        }
+        final int[] decimated = mDecimated;
+        for (int j = 0; j < decimatedFrames; j++) {
+            int sum = 0;
+            int start = j * factor;
+            for (int k = 0; k < factor; k++) {
+                sum += data[start + k];
+            }
+            decimated[j] = sum / factor;
+        }
+
+        if (mCoarseSums == null || mCoarseSums.length < lastCoarseLag + 2) {
+            mCoarseSums = new int[lastCoarseLag + 2];
+            mCandidates = new int[lastCoarseLag + 2];
+        }
+        final int[] sums = mCoarseSums;
+        int minSum = Integer.MAX_VALUE;
+        int minSumLag = firstCoarseLag;
+        long totalSum = 0;
+        int lags = 0;
+        for (int lag = firstCoarseLag; lag <= lastCoarseLag; lag++) {
+            int sum = 0;
+            for (int i = 0; i < decimatedWindow; i++) {
+                sum += Math.abs(decimated[i + lag] - decimated[i]);
+            }
+            sums[lag] = sum;
+            totalSum += sum;
+            lags++;
+            if (sum < minSum) {
+                minSum = sum;
+                minSumLag = lag;
+            }
+        }
+        mConfidence = totalSum > 0 ? Math.max(0, 1 - (float) minSum * lags / totalSum) : 0;
+        mMeanDifference = (float) totalSum / lags / Math.max(1, decimatedWindow);
+        return coarseCandidates(sums, firstCoarseLag, lastCoarseLag, minSumLag, totalSum / lags, mCandidates);
+    }
+
+    /**
+     * The decimated signal can't tell the dip of the period from those of its multiples
+     * reliably, every dip reasonably close to the deepest one is a candidate.
+     *
+     * @param candidates receives the candidates in increasing order
+     * @return the number of candidates, at least one
+     */
+    static int coarseCandidates(int[] sums, int firstLag, int lastLag, int minSumLag, long meanSum,
+                                int[] candidates) {
+        int minSum = sums[minSumLag];
+        long threshold = minSum + (long) (COARSE_TOLERANCE * (meanSum - minSum));
+        int count = 0;
+        // the first lags are on the slope down to lag 0, not in a dip
+        for (int lag = firstLag + 1; lag < lastLag; lag++) {
+            int sum = sums[lag];
+            if (sum <= threshold && sum <= sums[lag - 1] && sum <= sums[lag + 1]) {
+                candidates[count++] = lag;
+            }
+        }
+        if (count == 0) {
+            candidates[count++] = minSumLag;
+        }
+        return count;
+    }
+
+    /**
+     * Every multiple of the period is a dip about as deep as the period itself, the first
+     * local minimum close enough to the deepest one is the period.
+     */
+    private static int firstDip(int[] sums, int firstLag, int lastLag, int minSumLag, long meanSum) {
+        long minDepth = Long.MAX_VALUE;
+        // the first lags are on the slope down to lag 0, not in a dip
+        for (int lag = firstLag + 1; lag < lastLag; lag++) {
+            if (sums[lag] <= sums[lag - 1] && sums[lag] <= sums[lag + 1]) {
+                minDepth = Math.min(minDepth, vertexSum(sums, lag));
+            }
+        }
+        long threshold = minDepth + (long) (CANDIDATE_TOLERANCE * (meanSum - minDepth));
+        for (int lag = firstLag + 1; lag < lastLag; lag++) {
+            if (sums[lag] <= sums[lag - 1] && sums[lag] <= sums[lag + 1] && vertexSum(sums, lag) <= threshold) {
+                return lag;
+            }
+        }
+        return minSumLag;
+    }
+
+    /**
+     * The dips of the AMDF are V shaped, the period rarely falls on a lag. A dip sampled away
+     * from its vertex looks shallower than a multiple of the period sampled close to its own.
+     *
+     * @return the sum at the vertex of the V through the sums around lag
+     */
+    private static long vertexSum(int[] sums, int lag) {
+        return sums[lag] - Math.abs(sums[lag + 1] - sums[lag - 1]) / 2;
+    }
+
+    /**
+     * @return the offset from lag of the vertex of the V through the sums around it
+     */
+    private static float vertexOffset(int[] sums, int lag) {
+        int below = sums[lag - 1];
+        int above = sums[lag + 1];
+        long slopes = (long) below + above - 2 * sums[lag] + Math.abs(below - above);
+        return slopes > 0 ? (float) (below - above) / slopes : 0;
+    }
+
+    private static int sum(short[] data, int windowSize, int lag) {
+        int sum = 0;
+        for (int i = 0; i < windowSize; i++) {
+            sum += Math.abs(data[i + lag] - data[i]);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner.engine;
+
+import java.io.IOException;
+
+/**
+ * Source of mono 16-bit PCM samples, such as a microphone, a file or a generator.
+ * <p>
+ * A source is started once, read until it is stopped or runs out of samples, then stopped,
+ * which releases whatever it holds. It is not meant to be restarted.
+ */
+public interface AudioSource {
+
+    /**
+     * @return the sample rate in Hz, only valid once {@link #start()} was called, a live source
+     * may have to open its device to know it
+     */
+    int getSampleRate();
+
+    void start() throws IOException;
+
+    /**
+     * Reads up to count samples, blocking until some are available if the source is live.
+     *
+     * @return the number of samples read, possibly 0, or -1 at the end of the source
+     */
+    int read(short[] buffer, int offset, int count) throws IOException;
+
+    void stop();
+}
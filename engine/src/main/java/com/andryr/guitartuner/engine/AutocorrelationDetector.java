@@ -0,0 +1,143 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner.engine;
+
+/**
+ * Squared difference function computed through the autocorrelation theorem.
+ * <p>
+ * For every lag the detector evaluates d(lag) = sum((x[i] - x[i + lag])^2) over the first
+ * windowSize samples. Expanding the square gives two energy terms, read from a running sum
+ * of squares, and a cross-correlation term which is computed for all lags at once as the
+ * inverse FFT of conj(A) * B. The cost per frame is O(N log N) instead of O(windowSize * lags)
+ * for {@link AmdfDetector}. The first minimum close to the deepest one is refined by quadratic
+ * interpolation as in the AMDF.
+ */
+public class AutocorrelationDetector implements PitchDetector {
+
+    private static final double DIP_TOLERANCE = 0.1;
+
+    private Fft mFft;
+    private double[] mWindow;
+    private double[] mSegment;
+    private double[] mWindowRe;
+    private double[] mWindowIm;
+    private double[] mSegmentRe;
+    private double[] mSegmentIm;
+    private double[] mCorrelation;
+    private double[] mSquareSums;
+    private double[] mDiffs;
+    private float mConfidence;
+
+    @Override
+    public float getPitch(short[] data, int windowSize, int frames, float sampleRate, float minFreq, float maxFreq) {
+        float maxOffset = sampleRate / minFreq;
+        float minOffset = sampleRate / maxFreq;
+        int minLag = Math.max(2, (int) minOffset);
+        int maxLag = (int) maxOffset;
+
+        // the last lag needs one more sample for the interpolation
+        int segmentSize = Math.min(frames, windowSize + maxLag + 1);
+        windowSize = segmentSize - maxLag - 1;
+        mConfidence = 0;
+        if (windowSize <= 0 || minLag > maxLag) {
+            return 0;
+        }
+
+        prepare(segmentSize);
+        final int size = mFft.getSize();
+
+        for (int i = 0; i < size; i++) {
+            double sample = i < segmentSize ? data[i] : 0;
+            mSegment[i] = sample;
+            mWindow[i] = i < windowSize ? sample : 0;
+        }
+        mSquareSums[0] = 0;
+        for (int i = 0; i < segmentSize; i++) {
+            mSquareSums[i + 1] = mSquareSums[i] + mSegment[i] * mSegment[i];
+        }
+
+        mFft.realForward(mWindow, mWindowRe, mWindowIm);
+        mFft.realForward(mSegment, mSegmentRe, mSegmentIm);
+        for (int k = 0; k <= size / 2; k++) {
+            // conj(A) * B
+            double re = mWindowRe[k] * mSegmentRe[k] + mWindowIm[k] * mSegmentIm[k];
+            double im = mWindowRe[k] * mSegmentIm[k] - mWindowIm[k] * mSegmentRe[k];
+            mWindowRe[k] = re;
+            mWindowIm[k] = im;
+        }
+        mFft.realInverse(mWindowRe, mWindowIm, mCorrelation);
+
+        double windowEnergy = mSquareSums[windowSize];
+        double minDiff = Double.MAX_VALUE;
+        double totalDiff = 0;
+        for (int lag = minLag - 1; lag <= maxLag + 1; lag++) {
+            double laggedEnergy = mSquareSums[lag + windowSize] - mSquareSums[lag];
+            double diff = windowEnergy + laggedEnergy - 2 * mCorrelation[lag];
+            mDiffs[lag] = diff;
+            if (lag >= minLag && lag <= maxLag) {
+                totalDiff += diff;
+                if (diff < minDiff) {
+                    minDiff = diff;
+                }
+            }
+        }
+
+        // every multiple of the period is a minimum as deep as the period itself, take the
+        // first local minimum which is close enough to the global one
+        double threshold = minDiff + DIP_TOLERANCE * 2 * windowEnergy;
+        int minDiffLag = minLag;
+        for (int lag = minLag; lag <= maxLag; lag++) {
+            if (mDiffs[lag] <= threshold && mDiffs[lag] <= mDiffs[lag - 1] && mDiffs[lag] <= mDiffs[lag + 1]) {
+                minDiffLag = lag;
+                break;
+            }
+        }
+        minDiff = mDiffs[minDiffLag];
+        double meanDiff = totalDiff / (maxLag - minLag + 1);
+        mConfidence = meanDiff > 0 ? (float) Math.max(0, 1 - minDiff / meanDiff) : 0;
+
+        // quadratic interpolation
+        double prev = mDiffs[minDiffLag - 1];
+        double next = mDiffs[minDiffLag + 1];
+        double denominator = 2 * (2 * minDiff - next - prev);
+        double delta = denominator != 0 ? (next - prev) / denominator : 0;
+        return (float) (sampleRate / (minDiffLag + delta));
+    }
+
+    @Override
+    public float getConfidence() {
+        return mConfidence;
+    }
+
+    private void prepare(int segmentSize) {
+        int size = Integer.highestOneBit(Math.max(4, segmentSize - 1)) << 1;
+        // a larger transform gives the same correlation, keep it when the range changes
+        if (mFft != null && mFft.getSize() >= size) {
+            return;
+        }
+        mFft = new Fft(size);
+        mWindow = new double[size];
+        mSegment = new double[size];
+        mWindowRe = new double[size / 2 + 1];
+        mWindowIm = new double[size / 2 + 1];
+        mSegmentRe = new double[size / 2 + 1];
+        mSegmentIm = new double[size / 2 + 1];
+        mCorrelation = new double[size];
+        mSquareSums = new double[size + 1];
+        mDiffs = new double[size];
+    }
+}
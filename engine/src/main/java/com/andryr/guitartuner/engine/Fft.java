@@ -0,0 +1,185 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner.engine;
+
+/**
+ * Real input FFT of a fixed power of two size.
+ * <p>
+ * A real signal of n samples is packed into n / 2 complex values, transformed with a radix-2
+ * FFT and split back into the n / 2 + 1 bins of its half spectrum. Twiddle factors, the bit
+ * reversal table and the working buffers are allocated once in the constructor, so an
+ * instance must not be shared between threads.
+ */
+public class Fft {
+
+    private final int mSize;
+    private final int mHalfSize;
+    private final int[] mBitReversed;
+    // twiddles of the n / 2 complex FFT
+    private final double[] mCos;
+    private final double[] mSin;
+    // twiddles used to split the packed spectrum
+    private final double[] mSplitCos;
+    private final double[] mSplitSin;
+    private final double[] mRe;
+    private final double[] mIm;
+
+    public Fft(int size) {
+        if (size < 4 || (size & (size - 1)) != 0) {
+            throw new IllegalArgumentException("size must be a power of two >= 4: " + size);
+        }
+        mSize = size;
+        mHalfSize = size / 2;
+
+        mBitReversed = new int[mHalfSize];
+        int bits = Integer.numberOfTrailingZeros(mHalfSize);
+        for (int i = 0; i < mHalfSize; i++) {
+            mBitReversed[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+
+        mCos = new double[mHalfSize / 2];
+        mSin = new double[mHalfSize / 2];
+        for (int i = 0; i < mHalfSize / 2; i++) {
+            double angle = 2 * Math.PI * i / mHalfSize;
+            mCos[i] = Math.cos(angle);
+            mSin[i] = Math.sin(angle);
+        }
+
+        mSplitCos = new double[mHalfSize + 1];
+        mSplitSin = new double[mHalfSize + 1];
+        for (int i = 0; i <= mHalfSize; i++) {
+            double angle = 2 * Math.PI * i / mSize;
+            mSplitCos[i] = Math.cos(angle);
+            mSplitSin[i] = Math.sin(angle);
+        }
+
+        mRe = new double[mHalfSize];
+        mIm = new double[mHalfSize];
+    }
+
+    public int getSize() {
+        return mSize;
+    }
+
+    /**
+     * Computes the half spectrum of a real signal.
+     *
+     * @param input the signal, at least getSize() samples
+     * @param re    receives the real parts of bins 0 to getSize() / 2
+     * @param im    receives the imaginary parts of bins 0 to getSize() / 2
+     */
+    public void realForward(double[] input, double[] re, double[] im) {
+        final int m = mHalfSize;
+        for (int k = 0; k < m; k++) {
+            mRe[k] = input[2 * k];
+            mIm[k] = input[2 * k + 1];
+        }
+        transform(mRe, mIm, false);
+
+        for (int k = 0; k <= m; k++) {
+            int j = k == m ? 0 : k;
+            int mirror = k == 0 ? 0 : m - k;
+            double ar = mRe[j];
+            double ai = mIm[j];
+            double br = mRe[mirror];
+            double bi = -mIm[mirror];
+
+            // even and odd samples spectra
+            double er = (ar + br) / 2;
+            double ei = (ai + bi) / 2;
+            double or = (ai - bi) / 2;
+            double oi = -(ar - br) / 2;
+
+            double c = mSplitCos[k];
+            double s = mSplitSin[k];
+            re[k] = er + c * or + s * oi;
+            im[k] = ei + c * oi - s * or;
+        }
+    }
+
+    /**
+     * Inverse of {@link #realForward}.
+     *
+     * @param re     real parts of bins 0 to getSize() / 2
+     * @param im     imaginary parts of bins 0 to getSize() / 2
+     * @param output receives getSize() samples
+     */
+    public void realInverse(double[] re, double[] im, double[] output) {
+        final int m = mHalfSize;
+        for (int k = 0; k < m; k++) {
+            double ar = re[k];
+            double ai = im[k];
+            double br = re[m - k];
+            double bi = -im[m - k];
+
+            double er = (ar + br) / 2;
+            double ei = (ai + bi) / 2;
+            double dr = (ar - br) / 2;
+            double di = (ai - bi) / 2;
+
+            // divide by the twiddle, i.e. multiply by its conjugate
+            double c = mSplitCos[k];
+            double s = mSplitSin[k];
+            double or = c * dr - s * di;
+            double oi = c * di + s * dr;
+
+            // Z = E + i * O
+            mRe[k] = er - oi;
+            mIm[k] = ei + or;
+        }
+        transform(mRe, mIm, true);
+
+        for (int k = 0; k < m; k++) {
+            output[2 * k] = mRe[k] / m;
+            output[2 * k + 1] = mIm[k] / m;
+        }
+    }
+
+    private void transform(double[] re, double[] im, boolean inverse) {
+        final int n = mHalfSize;
+        for (int i = 0; i < n; i++) {
+            int j = mBitReversed[i];
+            if (j > i) {
+                double t = re[i];
+                re[i] = re[j];
+                re[j] = t;
+                t = im[i];
+                im[i] = im[j];
+                im[j] = t;
+            }
+        }
+
+        for (int size = 2; size <= n; size *= 2) {
+            int half = size / 2;
+            int step = n / size;
+            for (int start = 0; start < n; start += size) {
+                for (int j = 0; j < half; j++) {
+                    double wr = mCos[j * step];
+                    double wi = inverse ? mSin[j * step] : -mSin[j * step];
+                    int a = start + j;
+                    int b = a + half;
+                    double tr = wr * re[b] - wi * im[b];
+                    double ti = wr * im[b] + wi * re[b];
+                    re[b] = re[a] - tr;
+                    im[b] = im[a] - ti;
+                    re[a] += tr;
+                    im[a] += ti;
+                }
+            }
+        }
+    }
+}
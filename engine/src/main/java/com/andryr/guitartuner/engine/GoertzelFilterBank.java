@@ -0,0 +1,201 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner.engine;
+
+/**
+ * Bank of Goertzel filters tuned to the strings of a fixed tuning, used to tell which string
+ * is ringing before the pitch is estimated.
+ * <p>
+ * Every string has a filter at each of its first {@link #HARMONICS} harmonics, fundamental
+ * included. A filter runs over the latest {@link #DEFAULT_CYCLES} periods of its own
+ * frequency, so all of them have the same bandwidth relative to their frequency: a string a
+ * semitone off still passes through its filters while the neighbouring strings, a few
+ * semitones away, are rejected. The filters only go up to a few times the highest string,
+ * so they run on a copy of the frame decimated by up to {@link #MAX_DECIMATION} (averaging
+ * consecutive samples as a crude low-pass). The coefficients and lengths only depend on the
+ * targets and the sample rate, they are computed again only when the sample rate changes.
+ * <p>
+ * The score of a string is the energy of its harmonics relative to the energy of the signal,
+ * about 1 for a pure tone on the target. The harmonics of the lower strings land on the
+ * higher strings, the fourth of E2 is the third of A2 for instance, so the energy of harmonic
+ * h only counts for 1 / h: the string whose fundamental is there wins.
+ * <p>
+ * An instance keeps state between frames and must not be shared between threads.
+ */
+public class GoertzelFilterBank {
+
+    public static final int HARMONICS = 3;
+    public static final int DEFAULT_CYCLES = 8;
+    public static final float DEFAULT_MIN_SCORE = 0.1f;
+    public static final int MAX_DECIMATION = 8;
+
+    // the averaging low-pass must leave the highest filter mostly untouched
+    private static final int MIN_SAMPLES_PER_PERIOD = 4;
+
+    private final float[] mTargets;
+    private final int mCycles;
+    private final float mMinScore;
+    private final double[] mCoefficients;
+    private final int[] mLengths;
+    private final float[] mScores;
+    private int mSampleRate;
+    private int mFactor;
+    private double[] mDecimated;
+
+    /**
+     * @param targets frequency of each string, in Hz
+     */
+    public GoertzelFilterBank(float[] targets) {
+        this(targets, DEFAULT_CYCLES, DEFAULT_MIN_SCORE);
+    }
+
+    /**
+     * @param targets  frequency of each string, in Hz
+     * @param cycles   length of the filters in periods of their frequency, fewer cycles accept
+     *                 strings further off their target
+     * @param minScore lowest score for a string to be selected
+     */
+    public GoertzelFilterBank(float[] targets, int cycles, float minScore) {
+        if (targets.length == 0 || cycles < 1) {
+            throw new IllegalArgumentException("Invalid filter bank: " + targets.length + " strings, "
+                    + cycles + " cycles");
+        }
+        mTargets = targets.clone();
+        mCycles = cycles;
+        mMinScore = minScore;
+        mCoefficients = new double[targets.length * HARMONICS];
+        mLengths = new int[targets.length * HARMONICS];
+        mScores = new float[targets.length];
+    }
+
+    public int getStringCount() {
+        return mTargets.length;
+    }
+
+    public float getTarget(int string) {
+        return mTargets[string];
+    }
+
+    /**
+     * @return the score of the string in the last frame passed to {@link #selectString}
+     */
+    public float getScore(int string) {
+        return mScores[string];
+    }
+
+    /**
+     * Scores every string on the end of the frame.
+     *
+     * @param data       the samples
+     * @param frames     number of valid samples in data
+     * @param sampleRate sample rate of data in Hz
+     * @return the index of the string with the highest score, or -1 if none reaches the
+     * minimum score
+     */
+    public int selectString(short[] data, int frames, int sampleRate) {
+        prepare(sampleRate);
+
+        // the samples seen by the longest filter, decimated
+        int longest = 0;
+        for (int length : mLengths) {
+            longest = Math.max(longest, length);
+        }
+        final int factor = mFactor;
+        final int count = Math.min(longest, frames / factor);
+        if (mDecimated == null || mDecimated.length < count) {
+            mDecimated = new double[count];
+        }
+        final double[] decimated = mDecimated;
+        double energy = 0;
+        int start = frames - count * factor;
+        for (int j = 0; j < count; j++) {
+            int sum = 0;
+            for (int k = 0; k < factor; k++) {
+                sum += data[start++];
+            }
+            double sample = (double) sum / factor;
+            decimated[j] = sample;
+            energy += sample * sample;
+        }
+        double meanSquare = energy / Math.max(1, count);
+
+        int best = -1;
+        float bestScore = mMinScore;
+        for (int string = 0; string < mTargets.length; string++) {
+            double score = 0;
+            for (int h = 0; h < HARMONICS; h++) {
+                int filter = string * HARMONICS + h;
+                int length = Math.min(mLengths[filter], count);
+                if (length > 0 && meanSquare > 0) {
+                    // a sinusoid of amplitude a gives a power of (a * length / 2)^2
+                    double power = power(decimated, count - length, count, mCoefficients[filter]);
+                    score += 2 * power / ((double) length * length * meanSquare * (h + 1));
+                }
+            }
+            mScores[string] = (float) score;
+            if (score >= bestScore) {
+                bestScore = (float) score;
+                best = string;
+            }
+        }
+        return best;
+    }
+
+    private void prepare(int sampleRate) {
+        if (sampleRate == mSampleRate) {
+            return;
+        }
+        mSampleRate = sampleRate;
+
+        float highest = 0;
+        for (float target : mTargets) {
+            highest = Math.max(highest, target * HARMONICS);
+        }
+        int factor = 1;
+        while (factor < MAX_DECIMATION && sampleRate / (factor * 2) >= MIN_SAMPLES_PER_PERIOD * highest) {
+            factor *= 2;
+        }
+        mFactor = factor;
+        double rate = (double) sampleRate / factor;
+
+        for (int string = 0; string < mTargets.length; string++) {
+            for (int h = 0; h < HARMONICS; h++) {
+                int filter = string * HARMONICS + h;
+                double freq = mTargets[string] * (h + 1);
+                if (freq >= rate / 2) {
+                    // above the Nyquist frequency, nothing to hear
+                    mLengths[filter] = 0;
+                    continue;
+                }
+                // the filter is centred on the frequency itself, not on the nearest bin
+                mCoefficients[filter] = 2 * Math.cos(2 * Math.PI * freq / rate);
+                mLengths[filter] = (int) Math.round(mCycles * rate / freq);
+            }
+        }
+    }
+
+    private static double power(double[] data, int from, int to, double coefficient) {
+        double s1 = 0;
+        double s2 = 0;
+        for (int i = from; i < to; i++) {
+            double s = data[i] + coefficient * s1 - s2;
+            s2 = s1;
+            s1 = s;
+        }
+        return s1 * s1 + s2 * s2 - coefficient * s1 * s2;
+    }
+}
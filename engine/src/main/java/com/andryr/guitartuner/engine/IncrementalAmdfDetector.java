@@ -0,0 +1,200 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner.engine;
+
+import java.util.Arrays;
+
+/**
+ * Average magnitude difference function over a sliding window of a decimated stream, updated
+ * incrementally, then refined at full resolution like {@link AmdfDetector}.
+ * <p>
+ * The stream is decimated as in the coarse search of {@link AmdfDetector}, and for every
+ * coarse lag the detector keeps sum(|x[t] - x[t - lag]|) over the last windowSize / factor
+ * samples of the decimated stream. The terms of the samples entering the window are added and
+ * those of the samples leaving it are subtracted, so an update costs 2 * hop / factor * lags /
+ * factor. The sums are integers, so they never drift from what a full computation would give.
+ * <p>
+ * Only the lags around the coarse dips are then evaluated at full resolution, on the end of
+ * the frame which the streamed window covers. A frame which was not streamed is analysed from
+ * scratch by an {@link AmdfDetector}.
+ */
+public class IncrementalAmdfDetector implements StreamingPitchDetector {
+
+    private final AmdfDetector mAmdf = new AmdfDetector();
+
+    private int mWindowSize;
+    private float mSampleRate;
+    private float mMinFreq;
+    private float mMaxFreq;
+    private int mFactor;
+    private int mWindow;
+    private int mFirstLag;
+    private int mLastLag;
+
+    private int mPendingSum;
+    private int mPendingCount;
+    private int[] mHistory;
+    private int mHistoryPos;
+    private long mStreamed;
+    private int[] mSums;
+    private int[] mCandidates;
+    private short[] mTail;
+    private boolean mHasStreamedSums = false;
+    private float mConfidence;
+
+    @Override
+    public void addSamples(short[] hop, int count, int windowSize, float sampleRate, float minFreq, float maxFreq) {
+        configure(windowSize, sampleRate, minFreq, maxFreq);
+        final int factor = mFactor;
+        for (int n = 0; n < count; n++) {
+            mPendingSum += hop[n];
+            if (++mPendingCount == factor) {
+                addDecimated(mPendingSum / factor);
+                mPendingSum = 0;
+                mPendingCount = 0;
+            }
+        }
+        mHasStreamedSums = true;
+    }
+
+    private void addDecimated(int sample) {
+        final int[] history = mHistory;
+        final int capacity = history.length;
+        final int[] sums = mSums;
+        final int firstLag = mFirstLag;
+        final int pos = mHistoryPos;
+        history[pos] = sample;
+
+        // terms of the sample entering the window
+        long lastLag = Math.min(mLastLag, mStreamed);
+        for (int lag = firstLag; lag <= lastLag; lag++) {
+            int old = pos - lag;
+            if (old < 0) {
+                old += capacity;
+            }
+            sums[lag] += Math.abs(sample - history[old]);
+        }
+
+        // terms of the sample leaving the window
+        long leaving = mStreamed - mWindow;
+        if (leaving >= 0) {
+            int leavingPos = pos - mWindow;
+            if (leavingPos < 0) {
+                leavingPos += capacity;
+            }
+            final int leavingSample = history[leavingPos];
+            lastLag = Math.min(mLastLag, leaving);
+            for (int lag = firstLag; lag <= lastLag; lag++) {
+                int old = leavingPos - lag;
+                if (old < 0) {
+                    old += capacity;
+                }
+                sums[lag] -= Math.abs(leavingSample - history[old]);
+            }
+        }
+
+        mHistoryPos = pos + 1 == capacity ? 0 : pos + 1;
+        mStreamed++;
+    }
+
+    @Override
+    public void reset() {
+        mPendingSum = 0;
+        mPendingCount = 0;
+        mHistoryPos = 0;
+        mStreamed = 0;
+        if (mSums != null) {
+            Arrays.fill(mSums, 0);
+        }
+        mHasStreamedSums = false;
+    }
+
+    @Override
+    public float getPitch(short[] data, int windowSize, int frames, float sampleRate, float minFreq, float maxFreq) {
+        configure(windowSize, sampleRate, minFreq, maxFreq);
+        boolean streamed = mHasStreamedSums && mStreamed >= mWindow + mLastLag;
+        mHasStreamedSums = false;
+
+        if (!streamed) {
+            float pitch = mAmdf.getPitch(data, windowSize, frames, sampleRate, minFreq, maxFreq);
+            mConfidence = mAmdf.getConfidence();
+            return pitch;
+        }
+
+        final int[] sums = mSums;
+        int minSum = Integer.MAX_VALUE;
+        int minSumLag = mFirstLag;
+        long totalSum = 0;
+        int lags = 0;
+        for (int lag = mFirstLag; lag <= mLastLag; lag++) {
+            int sum = sums[lag];
+            totalSum += sum;
+            lags++;
+            if (sum < minSum) {
+                minSum = sum;
+                minSumLag = lag;
+            }
+        }
+        mConfidence = totalSum > 0 ? Math.max(0, 1 - (float) minSum * lags / totalSum) : 0;
+        int count = AmdfDetector.coarseCandidates(sums, mFirstLag, mLastLag, minSumLag, totalSum / lags,
+                mCandidates);
+
+        // the streamed window is the end of the frame, the fine search compares the same samples
+        int tailLength = Math.min(frames, windowSize + AmdfDetector.lastLag(sampleRate, minFreq) + 1);
+        if (mTail == null || mTail.length < tailLength) {
+            mTail = new short[tailLength];
+        }
+        System.arraycopy(data, frames - tailLength, mTail, 0, tailLength);
+        float pitch = mAmdf.refinePitch(mTail, windowSize, tailLength, sampleRate, minFreq, maxFreq, mFactor,
+                mCandidates, count, (float) totalSum / lags / mWindow);
+        if (pitch <= 0) {
+            mConfidence = 0;
+        }
+        return pitch;
+    }
+
+    @Override
+    public float getConfidence() {
+        return mConfidence;
+    }
+
+    /**
+     * Sizes the state for the given parameters, dropping what was streamed if they changed.
+     */
+    private void configure(int windowSize, float sampleRate, float minFreq, float maxFreq) {
+        if (mHistory != null && windowSize == mWindowSize && sampleRate == mSampleRate
+                && minFreq == mMinFreq && maxFreq == mMaxFreq) {
+            return;
+        }
+        mWindowSize = windowSize;
+        mSampleRate = sampleRate;
+        mMinFreq = minFreq;
+        mMaxFreq = maxFreq;
+        // the same coarse lags as the coarse search of AmdfDetector
+        int factor = AmdfDetector.decimationFactor(sampleRate, maxFreq, windowSize,
+                AmdfDetector.DEFAULT_MAX_DECIMATION);
+        mFactor = factor;
+        mWindow = Math.max(1, windowSize / factor);
+        mFirstLag = Math.max(1, AmdfDetector.firstLag(sampleRate, maxFreq) / factor);
+        mLastLag = (AmdfDetector.lastLag(sampleRate, minFreq) + factor - 1) / factor;
+
+        mHistory = new int[mWindow + mLastLag + 1];
+        mSums = new int[mLastLag + 1];
+        mCandidates = new int[mLastLag + 1];
+        reset();
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner.engine;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands the latest result over from the audio thread to a consumer polling at its own pace,
+ * typically once per display frame.
+ * <p>
+ * This is a triple buffer: the producer fills a slot of its own and swaps it with the shared
+ * one, the consumer swaps its own slot with the shared one when it holds a result it has not
+ * seen yet. Neither side blocks or allocates, and results published between two polls are
+ * dropped in favour of the latest. There must be a single producer and a single consumer
+ * thread.
+ *
+ * @param <T> type of the results, copied in and out of the slots
+ */
+public abstract class Mailbox<T> {
+
+    // set on the shared slot index when the producer swapped in a new result
+    private static final int FRESH = 4;
+
+    private final T[] mSlots;
+    private final AtomicInteger mShared = new AtomicInteger(0);
+    private int mBack = 1;
+    private int mFront = 2;
+
+    /**
+     * @param slots three distinct instances, owned by the mailbox from then on
+     */
+    protected Mailbox(T[] slots) {
+        if (slots.length != 3) {
+            throw new IllegalArgumentException("A mailbox needs 3 slots, got " + slots.length);
+        }
+        mSlots = slots;
+    }
+
+    /**
+     * Copies a result into or out of a slot.
+     */
+    protected abstract void copy(T from, T to);
+
+    /**
+     * Called by the producer, replaces any result which was not polled yet.
+     */
+    public void publish(T result) {
+        copy(result, mSlots[mBack]);
+        mBack = mShared.getAndSet(mBack | FRESH) & ~FRESH;
+    }
+
+    /**
+     * Called by the consumer.
+     *
+     * @param result receives the latest published result
+     * @return false if nothing was published since the last poll, result is then left unchanged
+     */
+    public boolean poll(T result) {
+        if ((mShared.get() & FRESH) == 0) {
+            return false;
+        }
+        mFront = mShared.getAndSet(mFront) & ~FRESH;
+        copy(mSlots[mFront], result);
+        return true;
+    }
+}
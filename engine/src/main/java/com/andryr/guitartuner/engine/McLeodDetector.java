@@ -0,0 +1,161 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner.engine;
+
+/**
+ * McLeod pitch method (McLeod and Wyvill, 2005).
+ * <p>
+ * The normalised square difference function n(lag) = 2 * r(lag) / m(lag) is computed from the
+ * autocorrelation r, obtained as the inverse FFT of the power spectrum, and from m, the sum of
+ * the squares of both overlapping parts which is updated in O(1) per lag. Between every
+ * positive going and negative going zero crossing of n the highest point is a key maximum;
+ * the first key maximum within {@link #DEFAULT_CUTOFF} of the highest one gives the period
+ * and is refined by quadratic interpolation.
+ * <p>
+ * Since n is normalised, two periods of the lowest frequency are enough, so the window is
+ * capped at that length and taken from the end of the frame, where the most recent samples
+ * are.
+ */
+public class McLeodDetector implements PitchDetector {
+
+    public static final float DEFAULT_CUTOFF = 0.93f;
+
+    private final float mCutoff;
+    private Fft mFft;
+    private double[] mWindow;
+    private double[] mRe;
+    private double[] mIm;
+    private double[] mCorrelation;
+    private double[] mNsdf;
+    private int[] mKeyMaxima;
+    private float mConfidence;
+
+    public McLeodDetector() {
+        this(DEFAULT_CUTOFF);
+    }
+
+    /**
+     * @param cutoff fraction of the highest key maximum a key maximum must reach to be chosen
+     */
+    public McLeodDetector(float cutoff) {
+        mCutoff = cutoff;
+    }
+
+    @Override
+    public float getPitch(short[] data, int windowSize, int frames, float sampleRate, float minFreq, float maxFreq) {
+        int minLag = Math.max(1, (int) (sampleRate / maxFreq));
+        int maxLag = (int) (sampleRate / minFreq);
+
+        windowSize = Math.min(Math.min(windowSize, frames), 2 * (maxLag + 1));
+        mConfidence = 0;
+        if (windowSize <= maxLag + 1 || minLag > maxLag) {
+            return 0;
+        }
+
+        prepare(windowSize + maxLag + 1);
+        final int size = mFft.getSize();
+        final int offset = frames - windowSize;
+
+        for (int i = 0; i < size; i++) {
+            mWindow[i] = i < windowSize ? data[offset + i] : 0;
+        }
+        mFft.realForward(mWindow, mRe, mIm);
+        for (int k = 0; k <= size / 2; k++) {
+            mRe[k] = mRe[k] * mRe[k] + mIm[k] * mIm[k];
+            mIm[k] = 0;
+        }
+        mFft.realInverse(mRe, mIm, mCorrelation);
+
+        final double[] nsdf = mNsdf;
+        double m = 2 * mCorrelation[0];
+        nsdf[0] = m > 0 ? 1 : 0;
+        for (int lag = 1; lag <= maxLag + 1; lag++) {
+            double first = mWindow[lag - 1];
+            double last = mWindow[windowSize - lag];
+            m -= first * first + last * last;
+            nsdf[lag] = m > 0 ? 2 * mCorrelation[lag] / m : 0;
+        }
+
+        // key maxima, skipping the lobe around lag 0
+        int lag = 1;
+        while (lag <= maxLag && nsdf[lag] > 0) {
+            lag++;
+        }
+        final int[] keyMaxima = mKeyMaxima;
+        int keyMaxCount = 0;
+        double highest = 0;
+        while (lag <= maxLag) {
+            while (lag <= maxLag && nsdf[lag] <= 0) {
+                lag++;
+            }
+            int max = -1;
+            while (lag <= maxLag && nsdf[lag] > 0) {
+                if (lag >= minLag && (max < 0 || nsdf[lag] > nsdf[max])) {
+                    max = lag;
+                }
+                lag++;
+            }
+            if (max > 0) {
+                keyMaxima[keyMaxCount++] = max;
+                if (nsdf[max] > highest) {
+                    highest = nsdf[max];
+                }
+            }
+        }
+
+        double threshold = mCutoff * highest;
+        int bestLag = -1;
+        for (int i = 0; i < keyMaxCount; i++) {
+            if (nsdf[keyMaxima[i]] >= threshold) {
+                bestLag = keyMaxima[i];
+                break;
+            }
+        }
+        if (bestLag < 0) {
+            return 0;
+        }
+
+        mConfidence = (float) Math.min(1, nsdf[bestLag]);
+
+        // quadratic interpolation
+        double prev = nsdf[bestLag - 1];
+        double next = nsdf[bestLag + 1];
+        double denominator = 2 * (2 * nsdf[bestLag] - next - prev);
+        double delta = denominator != 0 ? (next - prev) / denominator : 0;
+        return (float) (sampleRate / (bestLag + delta));
+    }
+
+    @Override
+    public float getConfidence() {
+        return mConfidence;
+    }
+
+    private void prepare(int minSize) {
+        int size = Integer.highestOneBit(Math.max(4, minSize - 1)) << 1;
+        // a larger transform gives the same correlation, keep it when the range changes
+        if (mFft != null && mFft.getSize() >= size) {
+            return;
+        }
+        mFft = new Fft(size);
+        mWindow = new double[size];
+        mRe = new double[size / 2 + 1];
+        mIm = new double[size / 2 + 1];
+        mCorrelation = new double[size];
+        mNsdf = new double[size];
+        mKeyMaxima = new int[size];
+    }
+}
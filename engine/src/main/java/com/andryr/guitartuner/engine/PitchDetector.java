@@ -0,0 +1,42 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.andryr.guitartuner.engine;
+
+/**
+ * Estimates the fundamental frequency of a frame. Implementations may keep scratch buffers
+ * between calls and must not be shared between threads.
+ */
+public interface PitchDetector {
+
+    /**
+     * @param data       the samples
+     * @param windowSize number of samples the detector should integrate over
+     * @param frames     number of valid samples in data
+     * @param sampleRate sample rate of data in Hz
+     * @param minFreq    lowest frequency to look for, in Hz
+     * @param maxFreq    highest frequency to look for, in Hz
+     * @return the estimated frequency in Hz
+     */
+    float getPitch(short[] data, int windowSize, int frames, float sampleRate, float minFreq, float maxFreq);
+
+    /**
+     * @return how periodic the frame passed to the last {@link #getPitch} call was, from 0
+     * (noise) to 1 (perfectly periodic)
+     */
+    float getConfidence();
+}
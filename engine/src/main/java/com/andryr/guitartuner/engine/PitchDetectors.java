@@ -0,0 +1,53 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.andryr.guitartuner.engine;
+
+/**
+ * Names of the available {@link PitchDetector} implementations, as stored in the preferences.
+ */
+public final class PitchDetectors {
+
+    public static final String AMDF = "amdf";
+    public static final String AUTOCORRELATION = "autocorrelation";
+    public static final String YIN = "yin";
+    public static final String MCLEOD = "mcleod";
+    public static final String INCREMENTAL_AMDF = "incremental_amdf";
+
+    private PitchDetectors() {
+    }
+
+    /**
+     * @param name one of the constants of this class
+     * @return a new detector
+     * @throws IllegalArgumentException if name is not a known detector
+     */
+    public static PitchDetector create(String name) {
+        if (AMDF.equals(name)) {
+            return new AmdfDetector();
+        } else if (AUTOCORRELATION.equals(name)) {
+            return new AutocorrelationDetector();
+        } else if (YIN.equals(name)) {
+            return new YinDetector();
+        } else if (MCLEOD.equals(name)) {
+            return new McLeodDetector();
+        } else if (INCREMENTAL_AMDF.equals(name)) {
+            return new IncrementalAmdfDetector();
+        }
+        throw new IllegalArgumentException("Unknown pitch detector: " + name);
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner.engine;
+
+/**
+ * Pitch detection on frames of mono PCM samples, independent of any audio API.
+ * <p>
+ * A frame is first gated on its intensity and zero crossing count, then the pitch is
+ * estimated by the current {@link PitchDetector} and only reported when it agrees with the
+ * estimate of the previous frame.
+ * <p>
+ * Frames can either be passed whole to {@link #process}, or audio can be streamed in small
+ * hops with {@link #processHop}: the hops are accumulated in a ring buffer and every hop
+ * re-analyses the latest frame, so consecutive frames overlap and estimates come at the hop
+ * rate instead of the frame rate. A {@link StreamingPitchDetector} also sees every hop and
+ * can update its state incrementally instead of starting over on each frame.
+ * <p>
+ * With tracking enabled, a {@link TrackingPitchDetector} first searches around the previous
+ * estimate while the pitch is stable. The whole range is searched again when that search is
+ * not conclusive, or when the intensity jumps, which usually means a new note was plucked.
+ * <p>
+ * For a fixed tuning, a {@link GoertzelFilterBank} can first pick the string which is ringing,
+ * the detector then only searches around that string instead of the whole range. Frames in
+ * which no string stands out are not analysed at all.
+ * <p>
+ * An instance keeps state between frames and must not be shared between threads.
+ */
+public class PitchEngine {
+
+    public static final float DEFAULT_MIN_FREQ = 50;
+    public static final float DEFAULT_MAX_FREQ = 500;
+    public static final int DEFAULT_FRAME_SIZE = 8192;
+
+    private static final double MIN_INTENSITY = 50;
+    private static final float MAX_FREQ_JUMP = 5f;
+    private static final double ONSET_INTENSITY_RATIO = 1.5;
+
+    private final PitchResult mResult = new PitchResult();
+    private PitchDetector mDetector = new AmdfDetector();
+    private float mLastComputedFreq = 0;
+    private boolean mLastDetected = false;
+    private double mLastIntensity = 0;
+    private boolean mTracking = false;
+    private short[] mConvertBuffer;
+    private float mMinFreq = DEFAULT_MIN_FREQ;
+    private float mMaxFreq = DEFAULT_MAX_FREQ;
+    private int mFrameSize = DEFAULT_FRAME_SIZE;
+    private RingBuffer mRingBuffer;
+    private short[] mFrame;
+    private GoertzelFilterBank mStringFilters;
+    private float mStringRatio;
+
+    public PitchDetector getDetector() {
+        return mDetector;
+    }
+
+    public void setDetector(PitchDetector detector) {
+        mDetector = detector;
+    }
+
+    public boolean isTracking() {
+        return mTracking;
+    }
+
+    /**
+     * Enables the search around the previous estimate, if the detector supports it.
+     *
+     * @see TrackingPitchDetector
+     */
+    public void setTracking(boolean tracking) {
+        mTracking = tracking;
+    }
+
+    public float getMinFrequency() {
+        return mMinFreq;
+    }
+
+    public float getMaxFrequency() {
+        return mMaxFreq;
+    }
+
+    /**
+     * Sets the range of fundamentals searched by the detector. The detectors evaluate one lag
+     * per sample of period in the range, so the narrower it is the cheaper every frame gets.
+     *
+     * @param minFreq lowest fundamental in Hz
+     * @param maxFreq highest fundamental in Hz
+     */
+    public void setFrequencyRange(float minFreq, float maxFreq) {
+        if (minFreq <= 0 || maxFreq <= minFreq) {
+            throw new IllegalArgumentException("invalid frequency range " + minFreq + " - " + maxFreq);
+        }
+        mMinFreq = minFreq;
+        mMaxFreq = maxFreq;
+    }
+
+    /**
+     * Sets the frequency range to the given notes widened by a margin on each side.
+     *
+     * @param lowestFreq  lowest note in Hz
+     * @param highestFreq highest note in Hz
+     * @param semitones   margin below the lowest and above the highest note
+     * @see #setFrequencyRange(float, float)
+     */
+    public void setFrequencyRange(float lowestFreq, float highestFreq, float semitones) {
+        float ratio = (float) Math.pow(2, semitones / 12.0);
+        setFrequencyRange(lowestFreq / ratio, highestFreq * ratio);
+    }
+
+    /**
+     * Low power mode: selects the string with a {@link GoertzelFilterBank} and narrows the
+     * search to the given margin around it, the frequency range still bounds the search. A
+     * {@link StreamingPitchDetector} keeps searching the whole range, since its state is
+     * updated for that range on every hop; only the frames without any string are skipped.
+     *
+     * @param targets   frequency of each string, or null to search the whole range
+     * @param semitones margin below and above the selected string
+     */
+    public void setStringTargets(float[] targets, float semitones) {
+        mStringFilters = targets != null ? new GoertzelFilterBank(targets) : null;
+        mStringRatio = (float) Math.pow(2, semitones / 12.0);
+    }
+
+    public int getFrameSize() {
+        return mFrameSize;
+    }
+
+    /**
+     * Sets the number of samples analysed by {@link #processHop}. Samples already streamed are
+     * discarded.
+     */
+    public void setFrameSize(int frameSize) {
+        mFrameSize = frameSize;
+        mRingBuffer = null;
+    }
+
+    /**
+     * Forgets the streamed samples and the previous estimate, the next frames are analysed as
+     * the start of a new stream.
+     */
+    public void reset() {
+        mLastComputedFreq = 0;
+        mLastDetected = false;
+        mLastIntensity = 0;
+        if (mRingBuffer != null) {
+            mRingBuffer.clear();
+        }
+        if (mDetector instanceof StreamingPitchDetector) {
+            ((StreamingPitchDetector) mDetector).reset();
+        }
+    }
+
+    /**
+     * Processes a frame of 16-bit samples.
+     *
+     * @param data       the samples
+     * @param frames     number of valid samples in data
+     * @param sampleRate sample rate of data in Hz
+     * @return the result for this frame, overwritten by the next call
+     */
+    public PitchResult process(short[] data, int frames, int sampleRate) {
+        final PitchResult result = mResult;
+        result.reset();
+        final double intensity = averageIntensity(data, frames);
+        result.intensity = intensity;
+
+        // the limit is per duration of audio, a frame of a given size lasts longer at lower
+        // sample rates; higher notes cross zero more often, it grows with the top of the range
+        int maxZeroCrossing = (int) (250 * (frames / 8192.0) * (44100.0 / sampleRate)
+                * Math.max(1, mMaxFreq / DEFAULT_MAX_FREQ));
+
+        boolean analysed = intensity >= MIN_INTENSITY && zeroCrossingCount(data, frames) <= maxZeroCrossing;
+        float minFreq = mMinFreq;
+        float maxFreq = mMaxFreq;
+        if (analysed && mStringFilters != null) {
+            int string = mStringFilters.selectString(data, frames, sampleRate);
+            analysed = string >= 0;
+            if (analysed && !(mDetector instanceof StreamingPitchDetector)) {
+                float target = mStringFilters.getTarget(string);
+                float from = Math.max(mMinFreq, target / mStringRatio);
+                float to = Math.min(mMaxFreq, target * mStringRatio);
+                // a string outside of the range is searched for in the whole range
+                if (from < to) {
+                    minFreq = from;
+                    maxFreq = to;
+                }
+            }
+        }
+
+        if (analysed) {
+
+            float freq = 0;
+            if (mTracking && mLastDetected && intensity <= ONSET_INTENSITY_RATIO * mLastIntensity
+                    && mDetector instanceof TrackingPitchDetector) {
+                freq = ((TrackingPitchDetector) mDetector).trackPitch(data, windowSize(frames), frames, sampleRate,
+                        mLastComputedFreq, minFreq, maxFreq);
+            }
+            if (freq <= 0) {
+                freq = mDetector.getPitch(data, windowSize(frames), frames, sampleRate, minFreq, maxFreq);
+            }
+            result.frequency = freq;
+            result.confidence = mDetector.getConfidence();
+            result.detected = Math.abs(freq - mLastComputedFreq) <= MAX_FREQ_JUMP;
+            mLastComputedFreq = freq;
+        }
+        mLastDetected = result.detected;
+        mLastIntensity = intensity;
+        return result;
+    }
+
+    /**
+     * Appends a hop of 16-bit samples to the stream and analyses the latest frame.
+     *
+     * @param hop        the new samples
+     * @param count      number of valid samples in hop
+     * @param sampleRate sample rate of the stream in Hz
+     * @return the result for the latest frame, never detected until a whole frame was streamed
+     */
+    public PitchResult processHop(short[] hop, int count, int sampleRate) {
+        if (mRingBuffer == null) {
+            mRingBuffer = new RingBuffer(mFrameSize);
+            mFrame = new short[mFrameSize];
+        }
+        mRingBuffer.write(hop, 0, count);
+        if (mDetector instanceof StreamingPitchDetector) {
+            ((StreamingPitchDetector) mDetector).addSamples(hop, count, windowSize(mFrameSize), sampleRate,
+                    mMinFreq, mMaxFreq);
+        }
+        if (!mRingBuffer.isFull()) {
+            mResult.reset();
+            return mResult;
+        }
+        mRingBuffer.read(mFrame, mFrameSize);
+        return process(mFrame, mFrameSize, sampleRate);
+    }
+
+    /**
+     * Processes a frame of floating point samples in the [-1, 1] range.
+     *
+     * @see #process(short[], int, int)
+     */
+    public PitchResult process(float[] data, int frames, int sampleRate) {
+        if (mConvertBuffer == null || mConvertBuffer.length < frames) {
+            mConvertBuffer = new short[frames];
+        }
+        for (int i = 0; i < frames; i++) {
+            float sample = Math.min(1f, Math.max(-1f, data[i]));
+            mConvertBuffer[i] = (short) (sample * Short.MAX_VALUE);
+        }
+        return process(mConvertBuffer, frames, sampleRate);
+    }
+
+    /**
+     * @return the number of samples the detectors compare for a frame of the given size, the
+     * rest of the frame holds the lagged samples
+     */
+    public static int windowSize(int frames) {
+        return frames / 4;
+    }
+
+    public static double averageIntensity(short[] data, int frames) {
+
+        double sum = 0;
+        for (int i = 0; i < frames; i++) {
+            sum += Math.abs(data[i]);
+        }
+        return sum / frames;
+
+    }
+
+    public static int zeroCrossingCount(short[] data, int frames) {
+        int count = 0;
+        boolean prevValPositive = data[0] >= 0;
+        for (int i = 1; i < frames; i++) {
+            boolean positive = data[i] >= 0;
+            if (prevValPositive == !positive)
+                count++;
+
+            prevValPositive = positive;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner.engine;
+
+import java.io.IOException;
+
+/**
+ * Processing loop: reads hops from an {@link AudioSource} and streams them into a
+ * {@link PitchEngine} until the source ends or {@link #stop()} is called.
+ * <p>
+ * The loop goes as fast as the source delivers samples, in real time for a microphone and
+ * as fast as the CPU allows for a file or a generator.
+ */
+public class PitchProcessor implements Runnable {
+
+    public static final int DEFAULT_HOP_SIZE = 1024;
+
+    public interface Listener {
+        /**
+         * Called on the processing thread, result is only valid during the call.
+         */
+        void onPitchDetected(PitchResult result);
+    }
+
+    public interface StrumListener {
+        /**
+         * Called on the processing thread, result is only valid during the call.
+         */
+        void onStrumAnalyzed(StrumResult result);
+    }
+
+    private final AudioSource mSource;
+    private final PitchEngine mEngine;
+    private final int mHopSize;
+    private Listener mListener;
+    private StrumAnalyzer mStrumAnalyzer;
+    private StrumListener mStrumListener;
+    private volatile boolean mStop = false;
+    private long mProcessedSamples;
+
+    public PitchProcessor(AudioSource source, PitchEngine engine) {
+        this(source, engine, DEFAULT_HOP_SIZE);
+    }
+
+    public PitchProcessor(AudioSource source, PitchEngine engine, int hopSize) {
+        if (hopSize <= 0) {
+            throw new IllegalArgumentException("Invalid hop size: " + hopSize);
+        }
+        mSource = source;
+        mEngine = engine;
+        mHopSize = hopSize;
+    }
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Streams the hops into a {@link StrumAnalyzer} instead of the engine, to tune all the
+     * strings at once. Must be called before the loop starts.
+     *
+     * @param analyzer the analyzer, or null to go back to the engine
+     * @param listener notified when at least one string was detected
+     */
+    public void setStrumAnalyzer(StrumAnalyzer analyzer, StrumListener listener) {
+        mStrumAnalyzer = analyzer;
+        mStrumListener = listener;
+    }
+
+    /**
+     * @return the number of samples processed so far
+     */
+    public long getProcessedSamples() {
+        return mProcessedSamples;
+    }
+
+    /**
+     * Asks the loop to return after the current hop. May be called from any thread.
+     */
+    public void stop() {
+        mStop = true;
+    }
+
+    /**
+     * Runs the loop on the calling thread. The source is started first and always stopped
+     * before returning.
+     */
+    public void process() throws IOException {
+        final short[] hop = new short[mHopSize];
+        mSource.start();
+        try {
+            final int sampleRate = mSource.getSampleRate();
+            while (!mStop) {
+                int read = mSource.read(hop, 0, mHopSize);
+                if (read < 0) {
+                    break;
+                }
+                if (read > 0) {
+                    mProcessedSamples += read;
+                    if (mStrumAnalyzer != null) {
+                        StrumResult strum = mStrumAnalyzer.processHop(hop, read, sampleRate);
+                        if (strum.isAnyDetected() && mStrumListener != null) {
+                            mStrumListener.onStrumAnalyzed(strum);
+                        }
+                    } else {
+                        PitchResult result = mEngine.processHop(hop, read, sampleRate);
+                        if (result.isDetected() && mListener != null) {
+                            mListener.onPitchDetected(result);
+                        }
+                    }
+                }
+            }
+        } finally {
+            mSource.stop();
+        }
+    }
+
+    /**
+     * Same as {@link #process()}, for an executor. A read error ends the loop with an
+     * {@link IllegalStateException}.
+     */
+    @Override
+    public void run() {
+        try {
+            process();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read audio", e);
+        }
+    }
+}
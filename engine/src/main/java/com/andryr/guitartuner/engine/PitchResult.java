@@ -0,0 +1,73 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner.engine;
+
+/**
+ * Outcome of {@link PitchEngine#process} for one frame.
+ * <p>
+ * The engine reuses the same instance for every frame, so the values must be read before the
+ * next frame is processed.
+ */
+public class PitchResult {
+    boolean detected;
+    float frequency;
+    double intensity;
+    float confidence;
+
+    void set(PitchResult other) {
+        detected = other.detected;
+        frequency = other.frequency;
+        intensity = other.intensity;
+        confidence = other.confidence;
+    }
+
+    void reset() {
+        detected = false;
+        frequency = 0;
+        intensity = 0;
+        confidence = 0;
+    }
+
+    /**
+     * @return true if the frame contained a pitch stable enough to be reported
+     */
+    public boolean isDetected() {
+        return detected;
+    }
+
+    /**
+     * @return the estimated frequency in Hz, or 0 if the frame was rejected before detection
+     */
+    public float getFrequency() {
+        return frequency;
+    }
+
+    /**
+     * @return the average absolute amplitude of the frame, in 16-bit sample units
+     */
+    public double getIntensity() {
+        return intensity;
+    }
+
+    /**
+     * @return the detector's confidence in the frequency, from 0 to 1
+     * @see PitchDetector#getConfidence()
+     */
+    public float getConfidence() {
+        return confidence;
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner.engine;
+
+import java.util.Random;
+
+/**
+ * Plucked string synthesised with the Karplus-Strong algorithm, for testing the detectors on
+ * something closer to a guitar than a sum of sines.
+ * <p>
+ * The shape of the plucked string, with some noise, circulates in a delay line closed by a
+ * two-point average, which damps the high harmonics faster than the low ones, and by a loss
+ * factor giving the requested decay.
+ * The stiffness of a real string, which makes its partials sharper than multiples of the
+ * fundamental, is imitated by a chain of first-order allpass filters in the loop. A last
+ * allpass filter provides the fractional part of the delay, which is solved for so that the
+ * fundamental is exactly the requested frequency whatever the stiffness.
+ * <p>
+ * The noise comes from seeded generators, so the same parameters always give the same
+ * samples. The parameters must be set before {@link #start()}.
+ */
+public class PluckedStringSource implements AudioSource {
+
+    private static final int STIFFNESS_STAGES = 4;
+    // a pick plucks close to the bridge, the string starts as a triangle peaking there
+    private static final double PLUCK_POSITION = 0.2;
+    // the pick and the finger add a burst of low-passed noise
+    private static final double PLUCK_NOISE = 0.3;
+    private static final double PLUCK_NOISE_SMOOTHING = 0.8;
+
+    private final float mFrequency;
+    private final int mSampleRate;
+    private final long mLength;
+    private final long mSeed;
+    private float mDetune = 0;
+    private float mStiffness = 0;
+    private float mDecay = 4;
+    private float mNoise = 0;
+    private int mAmplitude = 8000;
+
+    private double[] mDelayLine;
+    private int mDelayPos;
+    private double mLoss;
+    private double mTuningCoefficient;
+    private double mTuningState;
+    private double[] mStiffnessStates;
+    private double mPrevious;
+    private Random mNoiseRandom;
+    private long mPosition;
+
+    /**
+     * @param frequency  nominal frequency in Hz, before the detune
+     * @param sampleRate sample rate in Hz
+     * @param length     number of samples to generate, or a negative value for an endless note
+     * @param seed       seed of the excitation and background noise
+     */
+    public PluckedStringSource(float frequency, int sampleRate, long length, long seed) {
+        if (frequency <= 0 || sampleRate <= 0 || frequency > sampleRate / 8f) {
+            throw new IllegalArgumentException("Invalid string: " + frequency + "Hz at " + sampleRate + "Hz");
+        }
+        mFrequency = frequency;
+        mSampleRate = sampleRate;
+        mLength = length;
+        mSeed = seed;
+    }
+
+    /**
+     * @param cents offset of the played frequency from the nominal one
+     */
+    public void setDetune(float cents) {
+        mDetune = cents;
+    }
+
+    /**
+     * @param stiffness from 0, harmonic partials, to below 1, strongly stretched partials
+     */
+    public void setStiffness(float stiffness) {
+        if (stiffness < 0 || stiffness >= 1) {
+            throw new IllegalArgumentException("Invalid stiffness: " + stiffness);
+        }
+        mStiffness = stiffness;
+    }
+
+    /**
+     * @param seconds time for the fundamental to decay by 60dB
+     */
+    public void setDecay(float seconds) {
+        if (seconds <= 0) {
+            throw new IllegalArgumentException("Invalid decay: " + seconds);
+        }
+        mDecay = seconds;
+    }
+
+    /**
+     * @param noise amplitude of the white noise added to the string, relative to its peak
+     *              amplitude
+     */
+    public void setNoise(float noise) {
+        mNoise = noise;
+    }
+
+    public void setAmplitude(int amplitude) {
+        mAmplitude = amplitude;
+    }
+
+    /**
+     * @return the frequency actually played, the nominal one with the detune applied
+     */
+    public float getFrequency() {
+        return (float) (mFrequency * Math.pow(2, mDetune / 1200.0));
+    }
+
+    @Override
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    @Override
+    public void start() {
+        final double omega = 2 * Math.PI * getFrequency() / mSampleRate;
+        final double stiffnessCoefficient = -mStiffness;
+
+        // loop delay at the fundamental: the delay line, 0.5 for the average, the stiffness
+        // filters and the tuning filter, which gets what is left between 0.5 and 1.5
+        double remaining = mSampleRate / getFrequency() - 0.5
+                - STIFFNESS_STAGES * allpassDelay(stiffnessCoefficient, omega);
+        int length = (int) Math.floor(remaining - 0.5);
+        if (length < 2) {
+            throw new IllegalStateException("Frequency too high for the stiffness: " + getFrequency() + "Hz");
+        }
+        mTuningCoefficient = solveAllpass(remaining - length, omega);
+
+        mDelayLine = new double[length];
+        mDelayPos = 0;
+        mTuningState = 0;
+        mStiffnessStates = new double[STIFFNESS_STAGES];
+        mPrevious = 0;
+        mPosition = 0;
+        mLoss = Math.pow(10, -3 / (mDecay * getFrequency()));
+
+        Random random = new Random(mSeed);
+        double smoothed = 0;
+        double peak = PLUCK_POSITION * length;
+        for (int i = 0; i < length; i++) {
+            double shape = i < peak ? i / peak : (length - i) / (length - peak);
+            smoothed += (1 - PLUCK_NOISE_SMOOTHING) * ((random.nextDouble() * 2 - 1) - smoothed);
+            mDelayLine[i] = shape + PLUCK_NOISE * smoothed;
+        }
+        // the excitation has no DC, which would never decay through the average
+        double mean = 0;
+        for (double sample : mDelayLine) {
+            mean += sample;
+        }
+        mean /= length;
+        double max = 0;
+        for (int i = 0; i < length; i++) {
+            mDelayLine[i] -= mean;
+            max = Math.max(max, Math.abs(mDelayLine[i]));
+        }
+        for (int i = 0; i < length; i++) {
+            mDelayLine[i] /= max;
+        }
+        mNoiseRandom = new Random(~mSeed);
+    }
+
+    @Override
+    public int read(short[] buffer, int offset, int count) {
+        if (mLength >= 0) {
+            if (mPosition >= mLength) {
+                return -1;
+            }
+            count = (int) Math.min(count, mLength - mPosition);
+        }
+        final double[] delayLine = mDelayLine;
+        final double[] stiffnessStates = mStiffnessStates;
+        final double stiffnessCoefficient = -mStiffness;
+        final double tuningCoefficient = mTuningCoefficient;
+        for (int i = 0; i < count; i++) {
+            double out = delayLine[mDelayPos];
+
+            double x = mLoss * 0.5 * (out + mPrevious);
+            mPrevious = out;
+            for (int s = 0; s < STIFFNESS_STAGES; s++) {
+                x = allpass(stiffnessCoefficient, x, stiffnessStates, s);
+            }
+            double y = tuningCoefficient * x + mTuningState;
+            mTuningState = x - tuningCoefficient * y;
+
+            delayLine[mDelayPos] = y;
+            mDelayPos = mDelayPos + 1 == delayLine.length ? 0 : mDelayPos + 1;
+
+            double sample = mAmplitude * (out + mNoise * (mNoiseRandom.nextDouble() * 2 - 1));
+            buffer[offset + i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, sample));
+        }
+        mPosition += count;
+        return count;
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    /**
+     * First-order allpass (a + z^-1) / (1 + a z^-1) in transposed direct form II.
+     */
+    private static double allpass(double a, double x, double[] states, int stage) {
+        double y = a * x + states[stage];
+        states[stage] = x - a * y;
+        return y;
+    }
+
+    /**
+     * @return the phase delay in samples of the first-order allpass at the given angular
+     * frequency
+     */
+    private static double allpassDelay(double a, double omega) {
+        double numerator = Math.atan2(-Math.sin(omega), a + Math.cos(omega));
+        double denominator = Math.atan2(-a * Math.sin(omega), 1 + a * Math.cos(omega));
+        return -(numerator - denominator) / omega;
+    }
+
+    /**
+     * @return the coefficient of the first-order allpass with the given phase delay, between
+     * 0.5 and 1.5 samples, at the given angular frequency
+     */
+    private static double solveAllpass(double delay, double omega) {
+        // the delay decreases as the coefficient grows
+        double low = -0.99;
+        double high = 0.99;
+        for (int i = 0; i < 60; i++) {
+            double mid = (low + high) / 2;
+            if (allpassDelay(mid, omega) > delay) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        return (low + high) / 2;
+    }
+}
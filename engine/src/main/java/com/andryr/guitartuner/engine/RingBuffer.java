@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.andryr.guitartuner.engine;
+
+/**
+ * Fixed capacity buffer keeping the most recent samples written to it.
+ */
+public class RingBuffer {
+
+    private final short[] mData;
+    private int mWritePos = 0;
+    private int mSize = 0;
+
+    public RingBuffer(int capacity) {
+        mData = new short[capacity];
+    }
+
+    public int capacity() {
+        return mData.length;
+    }
+
+    /**
+     * @return the number of valid samples, at most capacity()
+     */
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isFull() {
+        return mSize == mData.length;
+    }
+
+    public void clear() {
+        mWritePos = 0;
+        mSize = 0;
+    }
+
+    /**
+     * Appends samples, overwriting the oldest ones once the buffer is full.
+     */
+    public void write(short[] src, int offset, int count) {
+        final int capacity = mData.length;
+        if (count >= capacity) {
+            // only the tail can be kept
+            offset += count - capacity;
+            count = capacity;
+        }
+        int first = Math.min(count, capacity - mWritePos);
+        System.arraycopy(src, offset, mData, mWritePos, first);
+        System.arraycopy(src, offset + first, mData, 0, count - first);
+        mWritePos = (mWritePos + count) % capacity;
+        mSize = Math.min(capacity, mSize + count);
+    }
+
+    /**
+     * Copies the count most recent samples to dst, oldest first.
+     *
+     * @throws IllegalArgumentException if fewer than count samples are available
+     */
+    public void read(short[] dst, int count) {
+        if (count > mSize) {
+            throw new IllegalArgumentException("only " + mSize + " samples available, " + count + " requested");
+        }
+        final int capacity = mData.length;
+        int start = (mWritePos - count + capacity) % capacity;
+        int first = Math.min(count, capacity - start);
+        System.arraycopy(mData, start, dst, 0, first);
+        System.arraycopy(mData, 0, dst, first, count - first);
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.andryr.guitartuner.engine;
+
+/**
+ * A {@link PitchDetector} which keeps its state up to date as samples are streamed in, so that
+ * analysing the latest frame costs less than starting over.
+ * <p>
+ * {@link PitchEngine#processHop} passes every hop to {@link #addSamples} before analysing the
+ * frame ending with that hop. The next call to {@link #getPitch} then uses the streamed state;
+ * calls that were not preceded by addSamples analyse the frame they are given from scratch.
+ */
+public interface StreamingPitchDetector extends PitchDetector {
+
+    /**
+     * @param hop        the new samples, in stream order
+     * @param count      number of valid samples in hop
+     * @param windowSize number of samples the detector should integrate over
+     * @param sampleRate sample rate of the stream in Hz
+     * @param minFreq    lowest frequency to look for, in Hz
+     * @param maxFreq    highest frequency to look for, in Hz
+     */
+    void addSamples(short[] hop, int count, int windowSize, float sampleRate, float minFreq, float maxFreq);
+
+    /**
+     * Forgets the streamed samples, the next ones are the start of a new stream.
+     */
+    void reset();
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner.engine;
+
+/**
+ * Estimates the pitch of every string of a tuning at once, from a single strum.
+ * <p>
+ * The frame is Hann windowed and zero padded to four times its length before its magnitude
+ * spectrum is taken. Around each target, within {@link #SEARCH_CENTS}, candidate fundamentals
+ * are scored by the product of the magnitudes at their first harmonics (the sum of their
+ * logarithms), which is only high when the whole harmonic series is there. The best candidate
+ * is refined by parabolic interpolation of the log magnitude at the peaks of its two lowest
+ * harmonics, which are the least stretched by the stiffness of the string.
+ * <p>
+ * A string is reported when its harmonics stand well above the average of the spectrum. The
+ * strings share harmonics, the third of A2 is close to E4 for instance, so a string which is
+ * not ringing may still be reported with the pitch of a neighbour's harmonic.
+ * <p>
+ * An instance keeps state between frames and must not be shared between threads.
+ */
+public class StrumAnalyzer {
+
+    public static final float SEARCH_CENTS = 50;
+    public static final int DEFAULT_FRAME_SIZE = 8192;
+
+    private static final float STEP_CENTS = 2;
+    private static final int HARMONICS = 4;
+    private static final int REFINED_HARMONICS = 2;
+    private static final int PADDING = 4;
+    private static final float MIN_FREQ = 30;
+    private static final float MAX_FREQ = 5000;
+    private static final float MIN_LEVEL = 8;
+    private static final double MIN_INTENSITY = 50;
+
+    private final float[] mTargets;
+    private final int mFrameSize;
+    private final StrumResult mResult;
+    private final double[] mRatios;
+    private final Fft mFft;
+    private final double[] mWindow;
+    private final double[] mInput;
+    private final double[] mRe;
+    private final double[] mIm;
+    private final double[] mMagnitudes;
+    private RingBuffer mRingBuffer;
+    private short[] mFrame;
+
+    /**
+     * @param targets expected frequency of each string, in Hz
+     */
+    public StrumAnalyzer(float[] targets) {
+        this(targets, DEFAULT_FRAME_SIZE);
+    }
+
+    /**
+     * @param targets   expected frequency of each string, in Hz
+     * @param frameSize number of samples analysed by {@link #processHop}
+     */
+    public StrumAnalyzer(float[] targets, int frameSize) {
+        if (targets.length == 0 || frameSize < 64) {
+            throw new IllegalArgumentException("Invalid strum analysis: " + targets.length + " strings, frames of "
+                    + frameSize);
+        }
+        mTargets = targets.clone();
+        mFrameSize = frameSize;
+        mResult = new StrumResult(targets.length);
+
+        int steps = (int) (2 * SEARCH_CENTS / STEP_CENTS) + 1;
+        mRatios = new double[steps];
+        for (int i = 0; i < steps; i++) {
+            mRatios[i] = Math.pow(2, (i * STEP_CENTS - SEARCH_CENTS) / 1200);
+        }
+
+        int size = Integer.highestOneBit(frameSize - 1) << 1;
+        mFft = new Fft(size * PADDING);
+        mWindow = new double[frameSize];
+        for (int i = 0; i < frameSize; i++) {
+            mWindow[i] = 0.5 - 0.5 * Math.cos(2 * Math.PI * i / (frameSize - 1));
+        }
+        mInput = new double[mFft.getSize()];
+        mRe = new double[mFft.getSize() / 2 + 1];
+        mIm = new double[mFft.getSize() / 2 + 1];
+        mMagnitudes = new double[mFft.getSize() / 2 + 1];
+    }
+
+    public int getFrameSize() {
+        return mFrameSize;
+    }
+
+    /**
+     * Analyses a frame of exactly {@link #getFrameSize()} samples.
+     *
+     * @return the result for this frame, overwritten by the next call
+     */
+    public StrumResult analyze(short[] data, int sampleRate) {
+        final StrumResult result = mResult;
+        result.reset();
+        result.intensity = PitchEngine.averageIntensity(data, mFrameSize);
+        if (result.intensity < MIN_INTENSITY) {
+            return result;
+        }
+
+        final int fftSize = mFft.getSize();
+        for (int i = 0; i < mFrameSize; i++) {
+            mInput[i] = data[i] * mWindow[i];
+        }
+        mFft.realForward(mInput, mRe, mIm);
+        final double[] magnitudes = mMagnitudes;
+        for (int k = 0; k <= fftSize / 2; k++) {
+            magnitudes[k] = Math.sqrt(mRe[k] * mRe[k] + mIm[k] * mIm[k]);
+        }
+
+        final double binsPerHz = (double) fftSize / sampleRate;
+        int firstBin = Math.max(1, (int) (MIN_FREQ * binsPerHz));
+        int lastBin = Math.min(fftSize / 2 - 2, (int) (Math.min(MAX_FREQ, sampleRate / 2f) * binsPerHz));
+        double floor = 0;
+        for (int k = firstBin; k <= lastBin; k++) {
+            floor += magnitudes[k];
+        }
+        floor /= Math.max(1, lastBin - firstBin + 1);
+        if (floor <= 0) {
+            return result;
+        }
+
+        for (int s = 0; s < mTargets.length; s++) {
+            analyzeString(s, binsPerHz, lastBin, floor);
+        }
+        return result;
+    }
+
+    /**
+     * Appends a hop of samples to the stream and analyses the latest frame.
+     *
+     * @return the result for the latest frame, nothing is detected until a whole frame was
+     * streamed
+     * @see PitchEngine#processHop
+     */
+    public StrumResult processHop(short[] hop, int count, int sampleRate) {
+        if (mRingBuffer == null) {
+            mRingBuffer = new RingBuffer(mFrameSize);
+            mFrame = new short[mFrameSize];
+        }
+        mRingBuffer.write(hop, 0, count);
+        if (!mRingBuffer.isFull()) {
+            mResult.reset();
+            return mResult;
+        }
+        mRingBuffer.read(mFrame, mFrameSize);
+        return analyze(mFrame, sampleRate);
+    }
+
+    private void analyzeString(int string, double binsPerHz, int lastBin, double floor) {
+        final double[] magnitudes = mMagnitudes;
+        final float target = mTargets[string];
+
+        double bestScore = Double.NEGATIVE_INFINITY;
+        double best = 0;
+        for (double ratio : mRatios) {
+            double freq = target * ratio;
+            double score = 0;
+            for (int h = 1; h <= HARMONICS; h++) {
+                double bin = h * freq * binsPerHz;
+                if (bin >= lastBin) {
+                    break;
+                }
+                // harmonics buried in the noise all count the same
+                score += Math.log(magnitudeAt(bin) + floor);
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                best = freq;
+            }
+        }
+        if (best * binsPerHz >= lastBin) {
+            return;
+        }
+
+        double weightedSum = 0;
+        double weights = 0;
+        double peak = 0;
+        for (int h = 1; h <= REFINED_HARMONICS; h++) {
+            int bin = (int) Math.round(h * best * binsPerHz);
+            if (bin + PADDING >= lastBin) {
+                break;
+            }
+            // the candidate is within a fraction of a bin of the peak, whose main lobe is
+            // 2 * PADDING bins wide on each side
+            int peakBin = bin;
+            for (int k = bin - PADDING / 2; k <= bin + PADDING / 2; k++) {
+                if (magnitudes[k] > magnitudes[peakBin]) {
+                    peakBin = k;
+                }
+            }
+            double previous = Math.log(magnitudes[peakBin - 1] + 1e-9);
+            double current = Math.log(magnitudes[peakBin] + 1e-9);
+            double next = Math.log(magnitudes[peakBin + 1] + 1e-9);
+            double denominator = previous - 2 * current + next;
+            double delta = denominator < 0 ? 0.5 * (previous - next) / denominator : 0;
+            double freq = (peakBin + delta) / binsPerHz / h;
+            weightedSum += magnitudes[peakBin] * freq;
+            weights += magnitudes[peakBin];
+            peak = Math.max(peak, magnitudes[peakBin]);
+        }
+        if (weights == 0) {
+            return;
+        }
+        float frequency = (float) (weightedSum / weights);
+        float cents = (float) (1200 * Math.log(frequency / target) / Math.log(2));
+        float level = (float) (peak / floor);
+        if (Math.abs(cents) > SEARCH_CENTS || level < MIN_LEVEL) {
+            return;
+        }
+        final StrumResult result = mResult;
+        result.detected[string] = true;
+        result.frequencies[string] = frequency;
+        result.cents[string] = cents;
+        result.levels[string] = level;
+    }
+
+    private double magnitudeAt(double bin) {
+        int k = (int) bin;
+        double fraction = bin - k;
+        return mMagnitudes[k] + fraction * (mMagnitudes[k + 1] - mMagnitudes[k]);
+    }
+}
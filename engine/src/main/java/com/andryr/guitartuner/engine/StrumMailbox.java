@@ -0,0 +1,35 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner.engine;
+
+/**
+ * {@link Mailbox} of the {@link StrumResult} of the latest frame.
+ */
+public class StrumMailbox extends Mailbox<StrumResult> {
+
+    /**
+     * @param strings number of strings of the results published
+     */
+    public StrumMailbox(int strings) {
+        super(new StrumResult[]{new StrumResult(strings), new StrumResult(strings), new StrumResult(strings)});
+    }
+
+    @Override
+    protected void copy(StrumResult from, StrumResult to) {
+        to.set(from);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner.engine;
+
+/**
+ * Outcome of {@link StrumAnalyzer#analyze} for one frame, string by string.
+ * <p>
+ * The analyzer reuses the same instance for every frame, so the values must be read before
+ * the next frame is processed.
+ */
+public class StrumResult {
+    final boolean[] detected;
+    final float[] frequencies;
+    final float[] cents;
+    final float[] levels;
+    double intensity;
+
+    public StrumResult(int strings) {
+        detected = new boolean[strings];
+        frequencies = new float[strings];
+        cents = new float[strings];
+        levels = new float[strings];
+    }
+
+    void set(StrumResult other) {
+        if (other.detected.length != detected.length) {
+            throw new IllegalArgumentException("Expected " + detected.length + " strings, got "
+                    + other.detected.length);
+        }
+        System.arraycopy(other.detected, 0, detected, 0, detected.length);
+        System.arraycopy(other.frequencies, 0, frequencies, 0, frequencies.length);
+        System.arraycopy(other.cents, 0, cents, 0, cents.length);
+        System.arraycopy(other.levels, 0, levels, 0, levels.length);
+        intensity = other.intensity;
+    }
+
+    void reset() {
+        for (int i = 0; i < detected.length; i++) {
+            detected[i] = false;
+            frequencies[i] = 0;
+            cents[i] = 0;
+            levels[i] = 0;
+        }
+        intensity = 0;
+    }
+
+    public int getStringCount() {
+        return detected.length;
+    }
+
+    /**
+     * @return true if any string was heard in the frame
+     */
+    public boolean isAnyDetected() {
+        for (boolean d : detected) {
+            if (d) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the string stood out from the rest of the spectrum
+     */
+    public boolean isDetected(int string) {
+        return detected[string];
+    }
+
+    /**
+     * @return the estimated frequency of the string in Hz, 0 if it was not detected
+     */
+    public float getFrequency(int string) {
+        return frequencies[string];
+    }
+
+    /**
+     * @return the deviation of the string from its target, in cents
+     */
+    public float getCents(int string) {
+        return cents[string];
+    }
+
+    /**
+     * @return how far the harmonics of the string stand above the average spectrum, as a ratio
+     */
+    public float getLevel(int string) {
+        return levels[string];
+    }
+
+    /**
+     * @return the average absolute amplitude of the frame, in 16-bit sample units
+     */
+    public double getIntensity() {
+        return intensity;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner.engine;
+
+/**
+ * Synthetic tone with decreasing harmonics, generated as fast as it is read.
+ * <p>
+ * The phase is computed from the sample index, so long tones do not drift and the same
+ * parameters always give the same samples.
+ */
+public class ToneSource implements AudioSource {
+
+    public static final int DEFAULT_HARMONICS = 5;
+
+    private final float mFrequency;
+    private final int mSampleRate;
+    private final long mLength;
+    private final int mAmplitude;
+    private final int mHarmonics;
+    private long mPosition;
+
+    /**
+     * @param length number of samples to generate, or a negative value for an endless tone
+     */
+    public ToneSource(float frequency, int sampleRate, long length, int amplitude) {
+        this(frequency, sampleRate, length, amplitude, DEFAULT_HARMONICS);
+    }
+
+    /**
+     * @param harmonics number of harmonics, the amplitude of the nth one is 1 / n of the
+     *                  fundamental's, 1 gives a pure sine
+     */
+    public ToneSource(float frequency, int sampleRate, long length, int amplitude, int harmonics) {
+        if (frequency <= 0 || sampleRate <= 0 || harmonics < 1) {
+            throw new IllegalArgumentException("Invalid tone: " + frequency + "Hz at " + sampleRate
+                    + "Hz with " + harmonics + " harmonics");
+        }
+        mFrequency = frequency;
+        mSampleRate = sampleRate;
+        mLength = length;
+        mAmplitude = amplitude;
+        mHarmonics = harmonics;
+    }
+
+    @Override
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    @Override
+    public void start() {
+        mPosition = 0;
+    }
+
+    @Override
+    public int read(short[] buffer, int offset, int count) {
+        if (mLength >= 0) {
+            if (mPosition >= mLength) {
+                return -1;
+            }
+            count = (int) Math.min(count, mLength - mPosition);
+        }
+        // the sum of the harmonics peaks below 2 for up to 5 of them
+        final double scale = mAmplitude / 2.0;
+        final double step = 2 * Math.PI * mFrequency / mSampleRate;
+        for (int i = 0; i < count; i++) {
+            double phase = step * (mPosition + i);
+            double sample = 0;
+            for (int harmonic = 1; harmonic <= mHarmonics; harmonic++) {
+                sample += Math.sin(phase * harmonic) / harmonic;
+            }
+            buffer[offset + i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, scale * sample));
+        }
+        mPosition += count;
+        return count;
+    }
+
+    @Override
+    public void stop() {
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner.engine;
+
+/**
+ * A {@link PitchDetector} which can look for the pitch close to an expected frequency only,
+ * which is much cheaper than searching the whole range while a note is sustained.
+ * <p>
+ * When tracking is enabled, {@link PitchEngine} calls {@link #trackPitch} with the previous
+ * estimate as long as the pitch is stable and no new note was plucked, and falls back to
+ * {@link #getPitch} when the tracking search is not conclusive.
+ */
+public interface TrackingPitchDetector extends PitchDetector {
+
+    /**
+     * @param data         the samples
+     * @param windowSize   number of samples to integrate over
+     * @param frames       number of valid samples in data
+     * @param sampleRate   sample rate of data in Hz
+     * @param expectedFreq frequency around which to search, in Hz
+     * @param minFreq      lowest frequency to look for, in Hz
+     * @param maxFreq      highest frequency to look for, in Hz
+     * @return the frequency in Hz, or 0 if there is no convincing pitch close to expectedFreq
+     */
+    float trackPitch(short[] data, int windowSize, int frames, float sampleRate, float expectedFreq,
+                     float minFreq, float maxFreq);
+}
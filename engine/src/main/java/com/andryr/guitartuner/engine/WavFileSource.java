@@ -0,0 +1,247 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner.engine;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Samples of a WAV file, read as fast as the consumer asks for them. 16, 24 and 32-bit
+ * integer PCM and 32-bit float files are supported, the channels of a multichannel file are
+ * averaged and the samples are converted to 16 bits.
+ * <p>
+ * The data is memory mapped a window at a time, so files of any length are streamed through
+ * the page cache without being copied to the heap.
+ */
+public class WavFileSource implements AudioSource {
+
+    private static final int FORMAT_PCM = 1;
+    private static final int FORMAT_FLOAT = 3;
+    private static final int FORMAT_EXTENSIBLE = 0xFFFE;
+
+    private static final int WINDOW_SIZE = 1 << 26;
+
+    private final RandomAccessFile mFile;
+    private final FileChannel mChannel;
+    private final int mSampleRate;
+    private final int mChannels;
+    private final int mBytesPerSample;
+    private final boolean mFloat;
+    private final long mDataOffset;
+    private final long mFrameCount;
+
+    private long mPosition;
+    private MappedByteBuffer mWindow;
+    private long mWindowStart;
+    private long mWindowEnd;
+
+    /**
+     * Opens the file and parses its header.
+     *
+     * @throws IOException if the file can't be read or is not in a supported WAV format
+     */
+    public WavFileSource(File file) throws IOException {
+        mFile = new RandomAccessFile(file, "r");
+        mChannel = mFile.getChannel();
+        boolean parsed = false;
+        try {
+            final long fileSize = mChannel.size();
+            ByteBuffer header = ByteBuffer.allocate(40).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(header, 0, 12);
+            if (header.getInt(0) != tag("RIFF") || header.getInt(8) != tag("WAVE")) {
+                throw new IOException(file + " is not a WAV file");
+            }
+
+            int format = 0;
+            int channels = 0;
+            int sampleRate = 0;
+            int bitsPerSample = 0;
+            long dataSize;
+            long position = 12;
+            while (true) {
+                readFully(header, position, 8);
+                int id = header.getInt(0);
+                long size = header.getInt(4) & 0xFFFFFFFFL;
+                position += 8;
+                if (id == tag("fmt ")) {
+                    if (size < 16) {
+                        throw new IOException("Invalid fmt chunk in " + file);
+                    }
+                    readFully(header, position, (int) Math.min(size, header.capacity()));
+                    format = header.getShort(0) & 0xFFFF;
+                    channels = header.getShort(2);
+                    sampleRate = header.getInt(4);
+                    bitsPerSample = header.getShort(14);
+                    if (format == FORMAT_EXTENSIBLE && size >= 26) {
+                        // the format is the start of the sub-format GUID
+                        format = header.getShort(24) & 0xFFFF;
+                    }
+                } else if (id == tag("data")) {
+                    if (channels == 0) {
+                        throw new IOException("No fmt chunk before the data in " + file);
+                    }
+                    dataSize = size;
+                    break;
+                }
+                // chunks are padded to an even size
+                position += size + (size & 1);
+            }
+
+            boolean supported = (format == FORMAT_PCM && (bitsPerSample == 16 || bitsPerSample == 24
+                    || bitsPerSample == 32)) || (format == FORMAT_FLOAT && bitsPerSample == 32);
+            if (!supported || channels < 1 || sampleRate <= 0) {
+                throw new IOException("Unsupported format in " + file + ": format " + format + ", "
+                        + bitsPerSample + " bits, " + channels + " channels at " + sampleRate + "Hz");
+            }
+            mSampleRate = sampleRate;
+            mChannels = channels;
+            mBytesPerSample = bitsPerSample / 8;
+            mFloat = format == FORMAT_FLOAT;
+            mDataOffset = position;
+
+            // recorders that were interrupted leave a size that is too large or unset
+            dataSize = Math.min(dataSize, fileSize - position);
+            mFrameCount = dataSize / (mBytesPerSample * channels);
+            parsed = true;
+        } finally {
+            if (!parsed) {
+                mFile.close();
+            }
+        }
+    }
+
+    /**
+     * @return the sample rate of the header, known as soon as the source is created
+     */
+    @Override
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    public int getChannelCount() {
+        return mChannels;
+    }
+
+    /**
+     * @return the number of samples per channel
+     */
+    public long getFrameCount() {
+        return mFrameCount;
+    }
+
+    /**
+     * Moves to the given sample, the next read starts there.
+     */
+    public void seek(long frame) {
+        if (frame < 0 || frame > mFrameCount) {
+            throw new IllegalArgumentException("Invalid position " + frame + " of " + mFrameCount);
+        }
+        mPosition = frame;
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public int read(short[] buffer, int offset, int count) throws IOException {
+        if (mPosition >= mFrameCount) {
+            return -1;
+        }
+        count = (int) Math.min(count, mFrameCount - mPosition);
+        final int frameSize = mBytesPerSample * mChannels;
+        if (mPosition + count > mWindowEnd || mPosition < mWindowStart || mWindow == null) {
+            map(mPosition, count);
+        }
+
+        final MappedByteBuffer window = mWindow;
+        final int channels = mChannels;
+        int pos = (int) ((mPosition - mWindowStart) * frameSize);
+        for (int i = 0; i < count; i++) {
+            float sum = 0;
+            for (int c = 0; c < channels; c++) {
+                sum += sample(window, pos);
+                pos += mBytesPerSample;
+            }
+            float sample = sum / channels;
+            buffer[offset + i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, sample));
+        }
+        mPosition += count;
+        return count;
+    }
+
+    @Override
+    public void stop() {
+        mWindow = null;
+        try {
+            mFile.close();
+        } catch (IOException e) {
+            // read only, nothing is lost
+        }
+    }
+
+    /**
+     * Maps the window starting at the given frame, large enough for count frames.
+     */
+    private void map(long frame, int count) throws IOException {
+        final int frameSize = mBytesPerSample * mChannels;
+        long frames = Math.min(mFrameCount - frame, Math.max(count, WINDOW_SIZE / frameSize));
+        mWindow = mChannel.map(FileChannel.MapMode.READ_ONLY, mDataOffset + frame * frameSize,
+                frames * frameSize);
+        mWindow.order(ByteOrder.LITTLE_ENDIAN);
+        mWindowStart = frame;
+        mWindowEnd = frame + frames;
+    }
+
+    /**
+     * @return the sample at the given byte position of the window, scaled to 16 bits
+     */
+    private float sample(ByteBuffer window, int pos) {
+        if (mFloat) {
+            return window.getFloat(pos) * 32768f;
+        }
+        switch (mBytesPerSample) {
+            case 2:
+                return window.getShort(pos);
+            case 3:
+                // the high byte carries the sign, the lowest one is dropped
+                return (window.get(pos + 1) & 0xFF) | window.get(pos + 2) << 8;
+            default:
+                return window.getInt(pos) >> 16;
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position, int count) throws IOException {
+        buffer.clear();
+        buffer.limit(count);
+        while (buffer.hasRemaining()) {
+            if (mChannel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of WAV file");
+            }
+        }
+    }
+
+    private static int tag(String tag) {
+        return tag.charAt(0) | tag.charAt(1) << 8 | tag.charAt(2) << 16 | tag.charAt(3) << 24;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner.engine;
+
+/**
+ * YIN estimator (de Cheveigne and Kawahara, 2002).
+ * <p>
+ * The squared difference function is normalised by its cumulative mean, which makes it start
+ * at 1 and dip towards 0 at the period. Lags are evaluated in increasing order and the scan
+ * stops at the bottom of the first dip under the threshold, so only lags up to about one
+ * period are computed for most notes. The bottom of the dip is refined by quadratic
+ * interpolation of the raw difference function.
+ */
+public class YinDetector implements PitchDetector {
+
+    public static final float DEFAULT_THRESHOLD = 0.15f;
+
+    private final float mThreshold;
+    private double[] mDiffs;
+    private double[] mNormalizedDiffs;
+    private float mConfidence;
+
+    public YinDetector() {
+        this(DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @param threshold absolute threshold on the normalised difference, from 0 to 1
+     */
+    public YinDetector(float threshold) {
+        mThreshold = threshold;
+    }
+
+    @Override
+    public float getPitch(short[] data, int windowSize, int frames, float sampleRate, float minFreq, float maxFreq) {
+        int minLag = Math.max(2, (int) (sampleRate / maxFreq));
+        int maxLag = (int) (sampleRate / minFreq);
+
+        // the last lag needs one more sample for the interpolation
+        windowSize = Math.min(windowSize, frames - maxLag - 1);
+        mConfidence = 0;
+        if (windowSize <= 0 || minLag > maxLag) {
+            return 0;
+        }
+        if (mNormalizedDiffs == null || mNormalizedDiffs.length < maxLag + 2) {
+            mDiffs = new double[maxLag + 2];
+            mNormalizedDiffs = new double[maxLag + 2];
+        }
+        final double[] rawDiffs = mDiffs;
+        final double[] diffs = mNormalizedDiffs;
+
+        diffs[0] = 1;
+        double runningSum = 0;
+        int bestLag = -1;
+        for (int lag = 1; lag <= maxLag + 1; lag++) {
+            long sum = 0;
+            for (int i = 0; i < windowSize; i++) {
+                long delta = data[i] - data[i + lag];
+                sum += delta * delta;
+            }
+            runningSum += sum;
+            rawDiffs[lag] = sum;
+            diffs[lag] = runningSum == 0 ? 1 : sum * (double) lag / runningSum;
+
+            if (lag > minLag) {
+                int prev = lag - 1;
+                if (bestLag < 0 && diffs[prev] < mThreshold) {
+                    // first lag under the threshold, follow the dip down to its bottom
+                    bestLag = prev;
+                }
+                if (bestLag >= 0) {
+                    if (diffs[lag] < diffs[bestLag] && lag <= maxLag) {
+                        bestLag = lag;
+                    } else {
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (bestLag < 0) {
+            // nothing under the threshold, fall back to the global minimum
+            bestLag = minLag;
+            for (int l = minLag + 1; l <= maxLag; l++) {
+                if (diffs[l] < diffs[bestLag]) {
+                    bestLag = l;
+                }
+            }
+        }
+
+        mConfidence = (float) Math.max(0, 1 - diffs[bestLag]);
+
+        // quadratic interpolation, on the raw difference which is not skewed by the normalisation
+        double prev = rawDiffs[bestLag - 1];
+        double next = rawDiffs[bestLag + 1];
+        double denominator = 2 * (2 * rawDiffs[bestLag] - next - prev);
+        double delta = denominator != 0 ? (next - prev) / denominator : 0;
+        return (float) (sampleRate / (bestLag + delta));
+    }
+
+    @Override
+    public float getConfidence() {
+        return mConfidence;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner.engine;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks that streaming audio through the engine does not allocate once warmed up.
+ */
+public class AllocationTest {
+
+    private static final int SAMPLE_RATE = 44100;
+    private static final int HOP_SIZE = 1024;
+    private static final int WARM_UP_HOPS = 200;
+    private static final int MEASURED_HOPS = 100;
+
+    private com.sun.management.ThreadMXBean mThreadBean;
+    private short[] mStream;
+
+    @Before
+    public void setUp() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        mThreadBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(mThreadBean.isThreadAllocatedMemorySupported());
+        mThreadBean.setThreadAllocatedMemoryEnabled(true);
+
+        // a note changing every few frames, so that both full searches and tracking run
+        mStream = new short[HOP_SIZE * 64];
+        float[] freqs = {82.41f, 110f, 146.83f, 196f};
+        int noteLength = mStream.length / freqs.length;
+        for (int n = 0; n < freqs.length; n++) {
+            short[] note = Signals.harmonics(freqs[n], SAMPLE_RATE, noteLength, 8000);
+            System.arraycopy(note, 0, mStream, n * noteLength, noteLength);
+        }
+    }
+
+    @Test
+    public void processHop_doesNotAllocate() {
+        String[] detectors = {PitchDetectors.AMDF, PitchDetectors.AUTOCORRELATION, PitchDetectors.YIN,
+                PitchDetectors.MCLEOD, PitchDetectors.INCREMENTAL_AMDF};
+        for (String name : detectors) {
+            for (boolean tracking : new boolean[]{false, true}) {
+                PitchEngine engine = new PitchEngine();
+                engine.setDetector(PitchDetectors.create(name));
+                engine.setTracking(tracking);
+                short[] hop = new short[HOP_SIZE];
+
+                stream(engine, hop, WARM_UP_HOPS);
+                long threadId = Thread.currentThread().getId();
+                long before = mThreadBean.getThreadAllocatedBytes(threadId);
+                stream(engine, hop, MEASURED_HOPS);
+                long allocated = mThreadBean.getThreadAllocatedBytes(threadId) - before;
+
+                assertEquals(name + (tracking ? " tracking" : ""), 0, allocated - measurementOverhead(threadId));
+            }
+        }
+    }
+
+    @Test
+    public void stringTargets_doNotAllocate() {
+        String[] detectors = {PitchDetectors.AMDF, PitchDetectors.AUTOCORRELATION, PitchDetectors.YIN,
+                PitchDetectors.MCLEOD, PitchDetectors.INCREMENTAL_AMDF};
+        for (String name : detectors) {
+            PitchEngine engine = new PitchEngine();
+            engine.setDetector(PitchDetectors.create(name));
+            engine.setTracking(true);
+            engine.setStringTargets(new float[]{82.41f, 110f, 146.83f, 196f, 246.94f, 329.63f}, 3);
+            short[] hop = new short[HOP_SIZE];
+
+            stream(engine, hop, WARM_UP_HOPS);
+            long threadId = Thread.currentThread().getId();
+            long before = mThreadBean.getThreadAllocatedBytes(threadId);
+            stream(engine, hop, MEASURED_HOPS);
+            long allocated = mThreadBean.getThreadAllocatedBytes(threadId) - before;
+
+            assertEquals(name, 0, allocated - measurementOverhead(threadId));
+        }
+    }
+
+    @Test
+    public void strumAnalyzer_doesNotAllocate() {
+        StrumAnalyzer analyzer = new StrumAnalyzer(new float[]{82.41f, 110f, 146.83f, 196f, 246.94f, 329.63f});
+        short[] hop = new short[HOP_SIZE];
+        int pos = 0;
+        long threadId = Thread.currentThread().getId();
+        long before = 0;
+        for (int i = 0; i < WARM_UP_HOPS + MEASURED_HOPS; i++) {
+            if (i == WARM_UP_HOPS) {
+                before = mThreadBean.getThreadAllocatedBytes(threadId);
+            }
+            System.arraycopy(mStream, pos, hop, 0, HOP_SIZE);
+            analyzer.processHop(hop, HOP_SIZE, SAMPLE_RATE);
+            pos = (pos + HOP_SIZE) % mStream.length;
+        }
+        long allocated = mThreadBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(0, allocated - measurementOverhead(threadId));
+    }
+
+    private void stream(PitchEngine engine, short[] hop, int hops) {
+        int pos = 0;
+        for (int i = 0; i < hops; i++) {
+            System.arraycopy(mStream, pos, hop, 0, HOP_SIZE);
+            engine.processHop(hop, HOP_SIZE, SAMPLE_RATE);
+            pos = (pos + HOP_SIZE) % mStream.length;
+        }
+    }
+
+    /**
+     * Bytes allocated by reading the counter itself, if any.
+     */
+    private long measurementOverhead(long threadId) {
+        long before = mThreadBean.getThreadAllocatedBytes(threadId);
+        return mThreadBean.getThreadAllocatedBytes(threadId) - before;
+    }
+}
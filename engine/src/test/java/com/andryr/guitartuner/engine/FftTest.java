@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.andryr.guitartuner.engine;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FftTest {
+
+    @Test
+    public void realForward_matchesDft() {
+        int size = 64;
+        double[] input = randomSignal(size);
+        double[] re = new double[size / 2 + 1];
+        double[] im = new double[size / 2 + 1];
+        new Fft(size).realForward(input, re, im);
+
+        for (int k = 0; k <= size / 2; k++) {
+            double expectedRe = 0;
+            double expectedIm = 0;
+            for (int i = 0; i < size; i++) {
+                double angle = 2 * Math.PI * k * i / size;
+                expectedRe += input[i] * Math.cos(angle);
+                expectedIm -= input[i] * Math.sin(angle);
+            }
+            assertEquals(expectedRe, re[k], 1e-9);
+            assertEquals(expectedIm, im[k], 1e-9);
+        }
+    }
+
+    @Test
+    public void realInverse_restoresSignal() {
+        int size = 1024;
+        Fft fft = new Fft(size);
+        double[] input = randomSignal(size);
+        double[] re = new double[size / 2 + 1];
+        double[] im = new double[size / 2 + 1];
+        double[] output = new double[size];
+        fft.realForward(input, re, im);
+        fft.realInverse(re, im, output);
+        assertArrayEquals(input, output, 1e-9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsNonPowerOfTwo() {
+        new Fft(1000);
+    }
+
+    private static double[] randomSignal(int size) {
+        Random random = new Random(size);
+        double[] data = new double[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = random.nextDouble() * 2 - 1;
+        }
+        return data;
+    }
+}
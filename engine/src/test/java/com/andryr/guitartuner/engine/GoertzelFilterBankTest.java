@@ -0,0 +1,71 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GoertzelFilterBankTest {
+
+    private static final float[] STANDARD = {82.41f, 110f, 146.83f, 196f, 246.94f, 329.63f};
+
+    @Test
+    public void selectString_findsPluckedString() {
+        for (int sampleRate : new int[]{44100, 16000, 8000}) {
+            GoertzelFilterBank bank = new GoertzelFilterBank(STANDARD);
+            for (int s = 0; s < STANDARD.length; s++) {
+                // up to a semitone off, as when the string is being tuned
+                for (float detune : new float[]{-100, -30, 0, 30, 100}) {
+                    short[] data = pluck(STANDARD[s], detune, sampleRate);
+                    assertEquals(sampleRate + " Hz, string " + s + ", " + detune + " cents",
+                            s, bank.selectString(data, data.length, sampleRate));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void selectString_scoresPureToneAboutOne() {
+        GoertzelFilterBank bank = new GoertzelFilterBank(STANDARD);
+        short[] data = Signals.sine(110f, 44100, 8192, 8000);
+        assertEquals(1, bank.selectString(data, data.length, 44100));
+        assertEquals(1f, bank.getScore(1), 0.05f);
+        assertEquals(0f, bank.getScore(0), 0.05f);
+    }
+
+    @Test
+    public void selectString_rejectsNoiseAndSilence() {
+        GoertzelFilterBank bank = new GoertzelFilterBank(STANDARD);
+        short[] noise = Signals.noise(8192, 8000, 3);
+        assertEquals(-1, bank.selectString(noise, noise.length, 44100));
+        short[] silence = new short[8192];
+        assertEquals(-1, bank.selectString(silence, silence.length, 44100));
+    }
+
+    private static short[] pluck(float freq, float detune, int sampleRate) {
+        int frames = sampleRate * 8192 / 44100;
+        PluckedStringSource source = new PluckedStringSource(freq, sampleRate, frames, 7);
+        source.setDetune(detune);
+        source.setStiffness(freq < 100 ? 0.3f : 0.1f);
+        source.setNoise(0.01f);
+        short[] data = new short[frames];
+        source.start();
+        source.read(data, 0, frames);
+        return data;
+    }
+}
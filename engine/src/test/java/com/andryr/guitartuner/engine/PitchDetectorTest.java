@@ -0,0 +1,250 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.andryr.guitartuner.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PitchDetectorTest {
+
+    private static final int[] SAMPLE_RATES = {44100, 22050, 16000, 11025, 8000};
+    private static final float[] FREQS = {73.42f, 82.41f, 110f, 146.83f, 196f, 246.94f, 329.63f};
+    private static final int FRAMES = 8192;
+    // chromatic detection range of the app, with its default margin
+    private static final float B0 = 30.87f;
+    private static final int B0_TO_C7 = 73;
+    private static final float CHROMATIC_MARGIN = 3;
+
+    private static PitchEngine chromaticRange() {
+        PitchEngine engine = new PitchEngine();
+        engine.setFrequencyRange(B0, (float) (B0 * Math.pow(2, B0_TO_C7 / 12.0)), CHROMATIC_MARGIN);
+        return engine;
+    }
+
+    private static float detect(PitchDetector detector, short[] data, int sampleRate) {
+        return detector.getPitch(data, FRAMES / 4, FRAMES, sampleRate,
+                PitchEngine.DEFAULT_MIN_FREQ, PitchEngine.DEFAULT_MAX_FREQ);
+    }
+
+    @Test
+    public void amdf_findsSineFrequency() {
+        PitchDetector detector = new AmdfDetector();
+        for (float freq : FREQS) {
+            short[] data = Signals.sine(freq, 44100, FRAMES, 8000);
+            assertEquals(0, Signals.cents(detect(detector, data, 44100), freq), 5);
+        }
+    }
+
+    @Test
+    public void amdf_coarseToFineMatchesExhaustiveSearch() {
+        PitchDetector exhaustive = new AmdfDetector(1);
+        PitchDetector coarseToFine = new AmdfDetector();
+        for (int sampleRate : new int[]{44100, 22050}) {
+            for (float freq : FREQS) {
+                short[] data = Signals.harmonics(freq, sampleRate, FRAMES, 8000);
+                float expected = detect(exhaustive, data, sampleRate);
+                float actual = detect(coarseToFine, data, sampleRate);
+                assertEquals(freq + "Hz at " + sampleRate + "Hz", expected, actual, 1e-3f);
+            }
+        }
+    }
+
+    @Test
+    public void amdf_findsA4AtOnePeriod() {
+        // a period of A4 at 44100Hz falls between two lags, twice the period is about as deep
+        for (PitchEngine range : new PitchEngine[]{new PitchEngine(), chromaticRange()}) {
+            short[] data = Signals.harmonics(440f, 44100, FRAMES, 8000);
+            float pitch = new AmdfDetector().getPitch(data, FRAMES / 4, FRAMES, 44100,
+                    range.getMinFrequency(), range.getMaxFrequency());
+            assertEquals(0, Signals.cents(pitch, 440f), 5);
+        }
+    }
+
+    @Test
+    public void amdf_findsEveryNoteOfTheChromaticRange() {
+        PitchEngine range = chromaticRange();
+        PitchDetector detector = new AmdfDetector();
+        for (int i = 0; i <= B0_TO_C7; i++) {
+            float freq = (float) (B0 * Math.pow(2, i / 12.0));
+            short[] data = Signals.harmonics(freq, 44100, FRAMES, 8000);
+            float pitch = detector.getPitch(data, FRAMES / 4, FRAMES, 44100, range.getMinFrequency(),
+                    range.getMaxFrequency());
+            assertEquals(freq + "Hz", 0, Signals.cents(pitch, freq), 5);
+        }
+    }
+
+    @Test
+    public void amdf_coarseToFineMatchesExhaustiveSearchFromB0ToC7() {
+        PitchDetector exhaustive = new AmdfDetector(1);
+        PitchDetector coarseToFine = new AmdfDetector();
+        for (int sampleRate : new int[]{44100, 22050}) {
+            for (int i = 0; i <= B0_TO_C7; i++) {
+                float freq = (float) (B0 * Math.pow(2, i / 12.0));
+                // an octave on each side, narrow enough for the frame to be decimated
+                float minFreq = freq / 2;
+                float maxFreq = freq * 2;
+                short[] data = Signals.harmonics(freq, sampleRate, FRAMES, 8000);
+                float expected = exhaustive.getPitch(data, FRAMES / 4, FRAMES, sampleRate, minFreq, maxFreq);
+                float actual = coarseToFine.getPitch(data, FRAMES / 4, FRAMES, sampleRate, minFreq, maxFreq);
+                assertEquals(freq + "Hz at " + sampleRate + "Hz", expected, actual, 1e-3f);
+            }
+        }
+    }
+
+    @Test
+    public void amdf_trackingMatchesExhaustiveSearch() {
+        AmdfDetector exhaustive = new AmdfDetector(1);
+        AmdfDetector tracking = new AmdfDetector();
+        for (float freq : FREQS) {
+            short[] data = Signals.harmonics(freq, 44100, FRAMES, 8000);
+            float expected = detect(exhaustive, data, 44100);
+            float actual = tracking.trackPitch(data, FRAMES / 4, FRAMES, 44100, freq * 1.01f,
+                    PitchEngine.DEFAULT_MIN_FREQ, PitchEngine.DEFAULT_MAX_FREQ);
+            assertEquals(freq + "Hz", expected, actual, 1e-3f);
+        }
+    }
+
+    @Test
+    public void amdf_trackingGivesUpWhenTheNoteChanged() {
+        AmdfDetector detector = new AmdfDetector();
+        short[] data = Signals.harmonics(220f, 44100, FRAMES, 8000);
+        // an octave below has a dip at the same lag, a fifth below has none
+        for (float expected : new float[]{110f, 146.83f}) {
+            assertEquals(0f, detector.trackPitch(data, FRAMES / 4, FRAMES, 44100, expected,
+                    PitchEngine.DEFAULT_MIN_FREQ, PitchEngine.DEFAULT_MAX_FREQ), 0f);
+        }
+    }
+
+    @Test
+    public void incrementalAmdf_streamedSumsMatchFullComputation() {
+        int sampleRate = 22050;
+        int windowSize = FRAMES / 4;
+        int hopSize = 300;
+        int tailLength = windowSize + (int) (sampleRate / PitchEngine.DEFAULT_MIN_FREQ) + 1;
+        short[] stream = Signals.harmonics(110f, sampleRate, FRAMES * 2, 8000);
+        // change pitch midway so the window really slides over different content
+        short[] second = Signals.harmonics(196f, sampleRate, stream.length, 8000);
+        System.arraycopy(second, FRAMES, stream, FRAMES, stream.length - FRAMES);
+        IncrementalAmdfDetector streaming = new IncrementalAmdfDetector();
+        AmdfDetector reference = new AmdfDetector();
+        short[] hop = new short[hopSize];
+        short[] frame = new short[FRAMES];
+        short[] tail = new short[tailLength];
+
+        for (int pos = 0; pos + hopSize <= stream.length; pos += hopSize) {
+            System.arraycopy(stream, pos, hop, 0, hopSize);
+            streaming.addSamples(hop, hopSize, windowSize, sampleRate,
+                    PitchEngine.DEFAULT_MIN_FREQ, PitchEngine.DEFAULT_MAX_FREQ);
+            int end = pos + hopSize;
+            if (end >= FRAMES) {
+                System.arraycopy(stream, end - FRAMES, frame, 0, FRAMES);
+                // the streamed window is the end of the frame
+                System.arraycopy(stream, end - tailLength, tail, 0, tailLength);
+                float expected = reference.getPitch(tail, windowSize, tailLength, sampleRate,
+                        PitchEngine.DEFAULT_MIN_FREQ, PitchEngine.DEFAULT_MAX_FREQ);
+                float actual = detect(streaming, frame, sampleRate);
+                assertEquals("at " + end, expected, actual, 1e-3f);
+            }
+        }
+        assertEquals(0, Signals.cents(detect(streaming, frame, sampleRate), 196f), 5);
+    }
+
+    @Test
+    public void autocorrelation_isWithinOneCent() {
+        PitchDetector detector = new AutocorrelationDetector();
+        for (int sampleRate : SAMPLE_RATES) {
+            for (float freq : FREQS) {
+                short[] data = Signals.harmonics(freq, sampleRate, FRAMES, 8000);
+                float pitch = detect(detector, data, sampleRate);
+                assertEquals(freq + "Hz at " + sampleRate + "Hz", 0, Signals.cents(pitch, freq), 1);
+            }
+        }
+    }
+
+    @Test
+    public void autocorrelation_agreesWithAmdf() {
+        PitchDetector amdf = new AmdfDetector(1);
+        PitchDetector autocorrelation = new AutocorrelationDetector();
+        for (float freq : FREQS) {
+            short[] data = Signals.harmonics(freq, 44100, FRAMES, 8000);
+            float expected = detect(amdf, data, 44100);
+            float actual = detect(autocorrelation, data, 44100);
+            // the AMDF interpolation itself is only accurate to about a cent
+            assertEquals(freq + "Hz", 0, Signals.cents(actual, expected), 1.5);
+        }
+    }
+
+    @Test
+    public void yin_isWithinOneCent() {
+        PitchDetector detector = new YinDetector();
+        for (int sampleRate : SAMPLE_RATES) {
+            for (float freq : FREQS) {
+                short[] data = Signals.harmonics(freq, sampleRate, FRAMES, 8000);
+                float pitch = detect(detector, data, sampleRate);
+                assertEquals(freq + "Hz at " + sampleRate + "Hz", 0, Signals.cents(pitch, freq), 1);
+                assertTrue(detector.getConfidence() > 0.9f);
+            }
+        }
+    }
+
+    @Test
+    public void yin_hasLowConfidenceOnNoise() {
+        PitchDetector detector = new YinDetector();
+        short[] data = Signals.noise(FRAMES, 8000, 1);
+        detect(detector, data, 44100);
+        assertTrue(detector.getConfidence() < 0.5f);
+    }
+
+    @Test
+    public void mcleod_isWithinOneCent() {
+        PitchDetector detector = new McLeodDetector();
+        for (int sampleRate : SAMPLE_RATES) {
+            for (float freq : FREQS) {
+                short[] data = Signals.harmonics(freq, sampleRate, FRAMES, 8000);
+                float pitch = detect(detector, data, sampleRate);
+                assertEquals(freq + "Hz at " + sampleRate + "Hz", 0, Signals.cents(pitch, freq), 1);
+                assertTrue(detector.getConfidence() > 0.9f);
+            }
+        }
+    }
+
+    @Test
+    public void mcleod_usesMostRecentSamples() {
+        // 110Hz followed by 220Hz: only the end of the frame should be analysed
+        short[] data = Signals.sine(110f, 44100, FRAMES, 8000);
+        short[] end = Signals.sine(220f, 44100, FRAMES / 2, 8000);
+        System.arraycopy(end, 0, data, FRAMES / 2, FRAMES / 2);
+        float pitch = detect(new McLeodDetector(), data, 44100);
+        assertEquals(0, Signals.cents(pitch, 220f), 1);
+    }
+
+    @Test
+    public void create_knowsEveryDetector() {
+        assertTrue(PitchDetectors.create(PitchDetectors.AMDF) instanceof AmdfDetector);
+        assertTrue(PitchDetectors.create(PitchDetectors.AUTOCORRELATION) instanceof AutocorrelationDetector);
+        assertTrue(PitchDetectors.create(PitchDetectors.YIN) instanceof YinDetector);
+        assertTrue(PitchDetectors.create(PitchDetectors.MCLEOD) instanceof McLeodDetector);
+        assertTrue(PitchDetectors.create(PitchDetectors.INCREMENTAL_AMDF) instanceof IncrementalAmdfDetector);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void create_rejectsUnknownDetector() {
+        PitchDetectors.create("unknown");
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PitchEngineTest {
+
+    private static final int SAMPLE_RATE = 44100;
+    private static final int FRAMES = 8192;
+
+    @Test
+    public void process_reportsStablePitchOnly() {
+        PitchEngine engine = new PitchEngine();
+        short[] data = Signals.sine(110f, SAMPLE_RATE, FRAMES, 8000);
+
+        // the first estimate has nothing to be compared to
+        assertFalse(engine.process(data, FRAMES, SAMPLE_RATE).isDetected());
+
+        PitchResult result = engine.process(data, FRAMES, SAMPLE_RATE);
+        assertTrue(result.isDetected());
+        assertEquals(110f, result.getFrequency(), 0.5f);
+    }
+
+    @Test
+    public void process_ignoresSilence() {
+        PitchEngine engine = new PitchEngine();
+        short[] data = Signals.sine(110f, SAMPLE_RATE, FRAMES, 20);
+        for (int i = 0; i < 3; i++) {
+            PitchResult result = engine.process(data, FRAMES, SAMPLE_RATE);
+            assertFalse(result.isDetected());
+            assertEquals(0f, result.getFrequency(), 0f);
+        }
+    }
+
+    @Test
+    public void process_detectsAtLowSampleRates() {
+        for (int sampleRate : new int[]{22050, 8000}) {
+            PitchEngine engine = new PitchEngine();
+            short[] data = Signals.harmonics(110f, sampleRate, FRAMES, 8000);
+            engine.process(data, FRAMES, sampleRate);
+            PitchResult result = engine.process(data, FRAMES, sampleRate);
+            assertTrue(sampleRate + "Hz", result.isDetected());
+            assertEquals(110f, result.getFrequency(), 0.5f);
+        }
+    }
+
+    @Test
+    public void process_ignoresNoiseAtLowSampleRates() {
+        for (int sampleRate : new int[]{22050, 8000}) {
+            PitchEngine engine = new PitchEngine();
+            short[] data = Signals.noise(FRAMES, 8000, 1);
+            for (int i = 0; i < 3; i++) {
+                PitchResult result = engine.process(data, FRAMES, sampleRate);
+                assertFalse(sampleRate + "Hz", result.isDetected());
+                assertEquals(0f, result.getFrequency(), 0f);
+            }
+        }
+    }
+
+    @Test
+    public void process_acceptsFloatSamples() {
+        PitchEngine engine = new PitchEngine();
+        float[] data = new float[FRAMES];
+        for (int i = 0; i < FRAMES; i++) {
+            data[i] = (float) (0.25 * Math.sin(2 * Math.PI * 196f * i / SAMPLE_RATE));
+        }
+        engine.process(data, FRAMES, SAMPLE_RATE);
+        PitchResult result = engine.process(data, FRAMES, SAMPLE_RATE);
+        assertTrue(result.isDetected());
+        assertEquals(196f, result.getFrequency(), 1f);
+    }
+
+    @Test
+    public void processHop_analysesLatestFrame() {
+        PitchEngine engine = new PitchEngine();
+        PitchEngine reference = new PitchEngine();
+        int hopSize = 1024;
+        short[] stream = Signals.harmonics(146.83f, SAMPLE_RATE, FRAMES * 2, 8000);
+        short[] hop = new short[hopSize];
+        short[] frame = new short[FRAMES];
+
+        for (int pos = 0; pos + hopSize <= stream.length; pos += hopSize) {
+            System.arraycopy(stream, pos, hop, 0, hopSize);
+            PitchResult result = engine.processHop(hop, hopSize, SAMPLE_RATE);
+            int end = pos + hopSize;
+            if (end < FRAMES) {
+                assertFalse(result.isDetected());
+            } else {
+                System.arraycopy(stream, end - FRAMES, frame, 0, FRAMES);
+                PitchResult expected = reference.process(frame, FRAMES, SAMPLE_RATE);
+                assertEquals(expected.isDetected(), result.isDetected());
+                assertEquals(expected.getFrequency(), result.getFrequency(), 0f);
+            }
+        }
+    }
+
+    @Test
+    public void reset_startsNewStream() {
+        PitchEngine engine = new PitchEngine();
+        int hopSize = 1024;
+        short[] hop = new short[hopSize];
+        short[] a2 = Signals.harmonics(110f, SAMPLE_RATE, FRAMES + hopSize, 8000);
+        for (int pos = 0; pos < a2.length; pos += hopSize) {
+            System.arraycopy(a2, pos, hop, 0, hopSize);
+            engine.processHop(hop, hopSize, SAMPLE_RATE);
+        }
+
+        engine.reset();
+
+        // nothing is reported until a whole frame of the new stream was analysed twice
+        short[] d3 = Signals.harmonics(146.83f, SAMPLE_RATE, FRAMES + hopSize, 8000);
+        PitchResult result = null;
+        for (int pos = 0; pos < d3.length; pos += hopSize) {
+            System.arraycopy(d3, pos, hop, 0, hopSize);
+            result = engine.processHop(hop, hopSize, SAMPLE_RATE);
+            assertEquals(pos + hopSize > FRAMES, result.isDetected());
+        }
+        assertEquals(146.83f, result.getFrequency(), 0.5f);
+    }
+
+    @Test
+    public void setFrequencyRange_widensNotesBySemitones() {
+        PitchEngine engine = new PitchEngine();
+        engine.setFrequencyRange(73.42f, 329.63f, 12);
+        assertEquals(36.71f, engine.getMinFrequency(), 0.01f);
+        assertEquals(659.26f, engine.getMaxFrequency(), 0.01f);
+
+        // drop D, low D to high E
+        engine.setFrequencyRange(73.42f, 329.63f, 3);
+        short[] data = Signals.harmonics(73.42f, SAMPLE_RATE, FRAMES, 8000);
+        engine.process(data, FRAMES, SAMPLE_RATE);
+        PitchResult result = engine.process(data, FRAMES, SAMPLE_RATE);
+        assertTrue(result.isDetected());
+        assertEquals(73.42f, result.getFrequency(), 0.5f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setFrequencyRange_rejectsEmptyRange() {
+        new PitchEngine().setFrequencyRange(300, 100);
+    }
+
+    @Test
+    public void tracking_followsNoteChanges() {
+        PitchEngine engine = new PitchEngine();
+        engine.setTracking(true);
+        for (float freq : new float[]{110f, 220f, 146.83f}) {
+            short[] data = Signals.harmonics(freq, SAMPLE_RATE, FRAMES, 8000);
+            engine.process(data, FRAMES, SAMPLE_RATE);
+            for (int i = 0; i < 3; i++) {
+                PitchResult result = engine.process(data, FRAMES, SAMPLE_RATE);
+                assertTrue(result.isDetected());
+                assertEquals(freq, result.getFrequency(), 0.5f);
+            }
+        }
+    }
+
+    @Test
+    public void stringTargets_searchAroundSelectedString() {
+        final float[] range = new float[2];
+        PitchEngine engine = new PitchEngine();
+        engine.setDetector(new PitchDetector() {
+            @Override
+            public float getPitch(short[] data, int windowSize, int frames, float sampleRate, float minFreq,
+                                  float maxFreq) {
+                range[0] = minFreq;
+                range[1] = maxFreq;
+                return 146.83f;
+            }
+
+            @Override
+            public float getConfidence() {
+                return 1;
+            }
+        });
+        engine.setFrequencyRange(82.41f, 329.63f, 3);
+        engine.setStringTargets(new float[]{82.41f, 110f, 146.83f, 196f, 246.94f, 329.63f}, 2);
+
+        engine.process(Signals.harmonics(146.83f, SAMPLE_RATE, FRAMES, 8000), FRAMES, SAMPLE_RATE);
+        assertEquals(146.83f / Math.pow(2, 2 / 12.0), range[0], 0.01f);
+        assertEquals(146.83f * Math.pow(2, 2 / 12.0), range[1], 0.01f);
+
+        // nothing rings at any string, the detector is not even called
+        range[0] = 0;
+        PitchResult result = engine.process(Signals.noise(FRAMES, 200, 1), FRAMES, SAMPLE_RATE);
+        assertEquals(0f, range[0], 0f);
+        assertEquals(0f, result.getFrequency(), 0f);
+    }
+
+    @Test
+    public void stringTargets_giveSamePitchAsFullSearch() {
+        float[] standard = {82.41f, 110f, 146.83f, 196f, 246.94f, 329.63f};
+        for (String detector : new String[]{PitchDetectors.AMDF, PitchDetectors.AUTOCORRELATION,
+                PitchDetectors.YIN, PitchDetectors.MCLEOD, PitchDetectors.INCREMENTAL_AMDF}) {
+            PitchEngine full = new PitchEngine();
+            PitchEngine lowPower = new PitchEngine();
+            for (PitchEngine engine : new PitchEngine[]{full, lowPower}) {
+                engine.setDetector(PitchDetectors.create(detector));
+                engine.setFrequencyRange(82.41f, 329.63f, 3);
+            }
+            lowPower.setStringTargets(standard, 3);
+            for (float freq : standard) {
+                short[] data = Signals.harmonics(freq * 1.02f, SAMPLE_RATE, FRAMES, 8000);
+                full.process(data, FRAMES, SAMPLE_RATE);
+                lowPower.process(data, FRAMES, SAMPLE_RATE);
+                PitchResult expected = full.process(data, FRAMES, SAMPLE_RATE);
+                float expectedFreq = expected.getFrequency();
+                PitchResult result = lowPower.process(data, FRAMES, SAMPLE_RATE);
+                assertTrue(detector + " " + freq, result.isDetected());
+                assertEquals(detector + " " + freq, expectedFreq, result.getFrequency(), 0.001f * freq);
+            }
+        }
+    }
+}
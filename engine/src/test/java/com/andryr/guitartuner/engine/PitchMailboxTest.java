@@ -0,0 +1,79 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PitchMailboxTest {
+
+    private static PitchResult result(float frequency) {
+        PitchResult result = new PitchResult();
+        result.detected = true;
+        result.frequency = frequency;
+        result.intensity = frequency;
+        return result;
+    }
+
+    @Test
+    public void poll_returnsLatestResultOnce() {
+        PitchMailbox mailbox = new PitchMailbox();
+        PitchResult polled = new PitchResult();
+        assertFalse(mailbox.poll(polled));
+
+        mailbox.publish(result(110));
+        mailbox.publish(result(146.83f));
+        assertTrue(mailbox.poll(polled));
+        assertEquals(146.83f, polled.getFrequency(), 0f);
+        assertFalse(mailbox.poll(polled));
+        assertEquals(146.83f, polled.getFrequency(), 0f);
+
+        mailbox.publish(result(196));
+        assertTrue(mailbox.poll(polled));
+        assertEquals(196f, polled.getFrequency(), 0f);
+    }
+
+    @Test
+    public void poll_neverSeesTornOrOlderResults() throws InterruptedException {
+        final PitchMailbox mailbox = new PitchMailbox();
+        final int count = 200000;
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                PitchResult result = new PitchResult();
+                for (int i = 1; i <= count; i++) {
+                    result.frequency = i;
+                    result.intensity = i;
+                    mailbox.publish(result);
+                }
+            }
+        });
+        producer.start();
+
+        PitchResult polled = new PitchResult();
+        float last = 0;
+        while (last < count) {
+            if (mailbox.poll(polled)) {
+                assertEquals(polled.getFrequency(), polled.getIntensity(), 0);
+                assertTrue(polled.getFrequency() > last);
+                last = polled.getFrequency();
+            }
+        }
+        producer.join();
+    }
+}
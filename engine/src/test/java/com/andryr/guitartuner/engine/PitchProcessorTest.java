@@ -0,0 +1,112 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner.engine;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class PitchProcessorTest {
+
+    private static final int SAMPLE_RATE = 44100;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static class LastPitch implements PitchProcessor.Listener {
+        int count;
+        float frequency;
+
+        @Override
+        public void onPitchDetected(PitchResult result) {
+            count++;
+            frequency = result.getFrequency();
+        }
+    }
+
+    @Test
+    public void process_detectsToneUntilSourceEnds() throws IOException {
+        ToneSource source = new ToneSource(146.83f, SAMPLE_RATE, SAMPLE_RATE, 8000);
+        PitchProcessor processor = new PitchProcessor(source, new PitchEngine());
+        LastPitch listener = new LastPitch();
+        processor.setListener(listener);
+
+        processor.process();
+
+        assertEquals(SAMPLE_RATE, processor.getProcessedSamples());
+        assertTrue(listener.count > 0);
+        assertEquals(0, Signals.cents(listener.frequency, 146.83f), 5);
+    }
+
+    @Test
+    public void process_returnsWhenStopped() throws IOException {
+        ToneSource source = new ToneSource(110f, SAMPLE_RATE, -1, 8000);
+        final PitchProcessor processor = new PitchProcessor(source, new PitchEngine(), 512);
+        processor.setListener(new PitchProcessor.Listener() {
+            @Override
+            public void onPitchDetected(PitchResult result) {
+                processor.stop();
+            }
+        });
+
+        processor.process();
+
+        assertTrue(processor.getProcessedSamples() > 0);
+        assertEquals(0, processor.getProcessedSamples() % 512);
+    }
+
+    @Test
+    public void process_feedsStrumAnalyzerInsteadOfEngine() throws IOException {
+        ToneSource source = new ToneSource(110f, SAMPLE_RATE, SAMPLE_RATE / 2, 8000);
+        PitchProcessor processor = new PitchProcessor(source, new PitchEngine());
+        LastPitch listener = new LastPitch();
+        processor.setListener(listener);
+        final float[] cents = {Float.NaN};
+        processor.setStrumAnalyzer(new StrumAnalyzer(new float[]{82.41f, 110f}), new PitchProcessor.StrumListener() {
+            @Override
+            public void onStrumAnalyzed(StrumResult result) {
+                assertFalse(result.isDetected(0));
+                cents[0] = result.getCents(1);
+            }
+        });
+
+        processor.process();
+
+        assertEquals(0, listener.count);
+        assertEquals(0, cents[0], 1);
+    }
+
+    @Test
+    public void process_detectsPitchInWavFile() throws IOException {
+        short[] tone = Signals.harmonics(82.41f, SAMPLE_RATE, 3 * SAMPLE_RATE / 2, 8000);
+        File file = mFolder.newFile("e2.wav");
+        WavFiles.write16(file, SAMPLE_RATE, tone);
+
+        PitchProcessor processor = new PitchProcessor(new WavFileSource(file), new PitchEngine());
+        LastPitch listener = new LastPitch();
+        processor.setListener(listener);
+        processor.process();
+
+        assertEquals(tone.length, processor.getProcessedSamples());
+        assertEquals(0, Signals.cents(listener.frequency, 82.41f), 5);
+    }
+}
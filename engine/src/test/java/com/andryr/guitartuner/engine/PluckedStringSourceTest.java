@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PluckedStringSourceTest {
+
+    private static final int SAMPLE_RATE = 44100;
+
+    @Test
+    public void read_isDeterministic() {
+        short[] first = read(string(110f, 42), SAMPLE_RATE / 2);
+        short[] second = read(string(110f, 42), SAMPLE_RATE / 2);
+        short[] other = read(string(110f, 43), SAMPLE_RATE / 2);
+        assertArrayEquals(first, second);
+        assertFalse(java.util.Arrays.equals(first, other));
+    }
+
+    @Test
+    public void read_playsDetunedFundamental() {
+        float[] stiffnesses = {0, 0.2f, 0.5f};
+        float[] frequencies = {41.2f, 82.41f, 329.63f, 659.26f};
+        for (float stiffness : stiffnesses) {
+            for (float frequency : frequencies) {
+                PluckedStringSource source = string(frequency, 7);
+                source.setDetune(-13);
+                source.setStiffness(stiffness);
+                short[] data = read(source, SAMPLE_RATE);
+
+                // the phase of the fundamental drifts by 2 * pi * error * dt between two windows
+                float reference = source.getFrequency();
+                int window = 4096;
+                int dt = SAMPLE_RATE / 2;
+                double drift = phase(data, dt, window, reference) - phase(data, 0, window, reference);
+                drift = Math.atan2(Math.sin(drift), Math.cos(drift));
+                double measured = reference + drift * SAMPLE_RATE / (2 * Math.PI * dt);
+                assertEquals(stiffness + " " + frequency, 0, Signals.cents((float) measured, reference), 0.1);
+                assertEquals(-13, Signals.cents(source.getFrequency(), frequency), 1e-3);
+            }
+        }
+    }
+
+    @Test
+    public void read_decays() {
+        PluckedStringSource source = string(110f, 1);
+        source.setDecay(0.5f);
+        short[] data = read(source, SAMPLE_RATE);
+        assertTrue(PitchEngine.averageIntensity(data, 4410) > 1000);
+        // 60dB per half second, the harmonics even faster
+        short[] tail = java.util.Arrays.copyOfRange(data, SAMPLE_RATE - 4410, SAMPLE_RATE);
+        assertTrue(PitchEngine.averageIntensity(tail, tail.length) < 2);
+    }
+
+    /**
+     * @return the phase of the given frequency in the Hann windowed samples
+     */
+    private static double phase(short[] data, int start, int length, float frequency) {
+        double re = 0;
+        double im = 0;
+        for (int i = 0; i < length; i++) {
+            double w = 0.5 - 0.5 * Math.cos(2 * Math.PI * i / length);
+            double angle = 2 * Math.PI * frequency * (start + i) / SAMPLE_RATE;
+            re += w * data[start + i] * Math.cos(angle);
+            im -= w * data[start + i] * Math.sin(angle);
+        }
+        return Math.atan2(im, re);
+    }
+
+    private static PluckedStringSource string(float frequency, long seed) {
+        return new PluckedStringSource(frequency, SAMPLE_RATE, -1, seed);
+    }
+
+    private static short[] read(PluckedStringSource source, int frames) {
+        short[] data = new short[frames];
+        source.start();
+        assertEquals(frames, source.read(data, 0, frames));
+        source.stop();
+        return data;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.andryr.guitartuner.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RingBufferTest {
+
+    @Test
+    public void read_returnsLatestSamplesAcrossWrap() {
+        RingBuffer buffer = new RingBuffer(5);
+        buffer.write(new short[]{1, 2, 3}, 0, 3);
+        assertFalse(buffer.isFull());
+        buffer.write(new short[]{4, 5, 6, 7}, 0, 4);
+        assertTrue(buffer.isFull());
+
+        short[] dst = new short[5];
+        buffer.read(dst, 5);
+        assertArrayEquals(new short[]{3, 4, 5, 6, 7}, dst);
+
+        short[] latest = new short[2];
+        buffer.read(latest, 2);
+        assertArrayEquals(new short[]{6, 7}, latest);
+    }
+
+    @Test
+    public void write_keepsTailOfLongInput() {
+        RingBuffer buffer = new RingBuffer(3);
+        buffer.write(new short[]{9, 1, 2, 3, 4, 5}, 1, 5);
+        short[] dst = new short[3];
+        buffer.read(dst, 3);
+        assertArrayEquals(new short[]{3, 4, 5}, dst);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void read_rejectsMoreThanAvailable() {
+        RingBuffer buffer = new RingBuffer(4);
+        buffer.write(new short[]{1, 2}, 0, 2);
+        buffer.read(new short[4], 3);
+    }
+}
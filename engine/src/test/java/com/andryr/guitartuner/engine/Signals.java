@@ -0,0 +1,65 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.andryr.guitartuner.engine;
+
+import java.util.Random;
+
+/**
+ * Synthetic signals shared by the tests.
+ */
+class Signals {
+
+    private Signals() {
+    }
+
+    static short[] sine(float freq, int sampleRate, int frames, int amplitude) {
+        short[] data = new short[frames];
+        for (int i = 0; i < frames; i++) {
+            data[i] = (short) (amplitude * Math.sin(2 * Math.PI * freq * i / sampleRate));
+        }
+        return data;
+    }
+
+    /**
+     * A tone with decreasing harmonics, closer to a string than a pure sine.
+     */
+    static short[] harmonics(float freq, int sampleRate, int frames, int amplitude) {
+        short[] data = new short[frames];
+        for (int i = 0; i < frames; i++) {
+            double sample = 0;
+            for (int harmonic = 1; harmonic <= 5; harmonic++) {
+                sample += Math.sin(2 * Math.PI * freq * harmonic * i / sampleRate) / harmonic;
+            }
+            data[i] = (short) (amplitude * sample / 2);
+        }
+        return data;
+    }
+
+    static short[] noise(int frames, int amplitude, long seed) {
+        Random random = new Random(seed);
+        short[] data = new short[frames];
+        for (int i = 0; i < frames; i++) {
+            data[i] = (short) (amplitude * (random.nextDouble() * 2 - 1));
+        }
+        return data;
+    }
+
+    static double cents(float freq, float reference) {
+        return 1200 * Math.log(freq / reference) / Math.log(2);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StrumAnalyzerTest {
+
+    private static final int SAMPLE_RATE = 44100;
+    private static final float[] STANDARD = {82.41f, 110f, 146.83f, 196f, 246.94f, 329.63f};
+
+    @Test
+    public void processHop_measuresEveryStringOfStrum() {
+        float[] detunes = {-20, 7, 0, 15, -9, 30};
+        StrumResult result = strum(new StrumAnalyzer(STANDARD), detunes, SAMPLE_RATE / 2);
+        for (int s = 0; s < STANDARD.length; s++) {
+            assertTrue("string " + s, result.isDetected(s));
+            assertEquals("string " + s, detunes[s], result.getCents(s), 2);
+        }
+    }
+
+    @Test
+    public void processHop_ignoresStringsNotPlayed() {
+        float[] detunes = {Float.NaN, -12, Float.NaN, Float.NaN, Float.NaN, Float.NaN};
+        StrumResult result = strum(new StrumAnalyzer(STANDARD), detunes, SAMPLE_RATE / 2);
+        assertTrue(result.isDetected(1));
+        assertEquals(-12, result.getCents(1), 2);
+        assertFalse(result.isDetected(0));
+        assertFalse(result.isDetected(3));
+    }
+
+    @Test
+    public void processHop_reportsNothingInSilence() {
+        StrumAnalyzer analyzer = new StrumAnalyzer(STANDARD);
+        short[] hop = new short[1024];
+        for (int i = 0; i < 10; i++) {
+            assertFalse(analyzer.processHop(hop, hop.length, SAMPLE_RATE).isAnyDetected());
+        }
+    }
+
+    @Test
+    public void mailbox_copiesEveryString() {
+        float[] detunes = {-20, 7, 0, 15, -9, 30};
+        StrumResult result = strum(new StrumAnalyzer(STANDARD), detunes, SAMPLE_RATE / 2);
+        StrumMailbox mailbox = new StrumMailbox(STANDARD.length);
+        StrumResult polled = new StrumResult(STANDARD.length);
+        mailbox.publish(result);
+        assertTrue(mailbox.poll(polled));
+        for (int s = 0; s < STANDARD.length; s++) {
+            assertEquals(result.getFrequency(s), polled.getFrequency(s), 0f);
+            assertEquals(result.getCents(s), polled.getCents(s), 0f);
+        }
+    }
+
+    /**
+     * Plucks the strings at once, NaN leaves a string silent, and streams the mix in.
+     */
+    private static StrumResult strum(StrumAnalyzer analyzer, float[] detunes, int frames) {
+        int[] mix = new int[frames];
+        short[] string = new short[frames];
+        for (int s = 0; s < STANDARD.length; s++) {
+            if (Float.isNaN(detunes[s])) {
+                continue;
+            }
+            PluckedStringSource source = new PluckedStringSource(STANDARD[s], SAMPLE_RATE, frames, s);
+            source.setDetune(detunes[s]);
+            source.setStiffness(STANDARD[s] < 100 ? 0.3f : 0.1f);
+            source.setAmplitude(4000);
+            source.setNoise(0.005f);
+            source.start();
+            source.read(string, 0, frames);
+            for (int i = 0; i < frames; i++) {
+                mix[i] += string[i];
+            }
+        }
+
+        short[] hop = new short[1024];
+        StrumResult result = null;
+        for (int pos = 0; pos + hop.length <= frames; pos += hop.length) {
+            for (int i = 0; i < hop.length; i++) {
+                hop[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, mix[pos + i]));
+            }
+            result = analyzer.processHop(hop, hop.length, SAMPLE_RATE);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner.engine;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static org.junit.Assert.*;
+
+public class WavFileSourceTest {
+
+    private static final int SAMPLE_RATE = 44100;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void read_mixesChannels() throws IOException {
+        short[] left = Signals.harmonics(196f, SAMPLE_RATE, 30000, 8000);
+        File file = mFolder.newFile("tone.wav");
+        WavFiles.write16(file, SAMPLE_RATE, left, new short[left.length]);
+
+        WavFileSource source = new WavFileSource(file);
+        assertEquals(SAMPLE_RATE, source.getSampleRate());
+        assertEquals(2, source.getChannelCount());
+        assertEquals(left.length, source.getFrameCount());
+
+        short[] read = readAll(source, 1000);
+        assertEquals(left.length, read.length);
+        for (int i = 0; i < left.length; i++) {
+            assertEquals(left[i] / 2, read[i]);
+        }
+    }
+
+    @Test
+    public void read_convertsFormatsTo16Bits() throws IOException {
+        short[] tone = Signals.harmonics(110f, SAMPLE_RATE, 5000, 20000);
+        int[][] formats = {{WavFiles.PCM, 24}, {WavFiles.PCM, 32}, {WavFiles.FLOAT, 32}};
+        for (int[] format : formats) {
+            File file = mFolder.newFile(format[0] + "_" + format[1] + ".wav");
+            WavFiles.write(file, 22050, format[0], format[1], tone);
+
+            WavFileSource source = new WavFileSource(file);
+            assertEquals(22050, source.getSampleRate());
+            assertArrayEquals(format[0] + "/" + format[1], tone, readAll(source, 777));
+        }
+    }
+
+    @Test
+    public void read_stopsAtEndOfTruncatedFile() throws IOException {
+        short[] tone = Signals.sine(110f, SAMPLE_RATE, 4000, 8000);
+        File file = mFolder.newFile("truncated.wav");
+        WavFiles.write16(file, SAMPLE_RATE, tone);
+        new java.io.RandomAccessFile(file, "rw").setLength(file.length() - 1001);
+
+        WavFileSource source = new WavFileSource(file);
+        assertEquals(tone.length - 501, readAll(source, 1024).length);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        File file = mFolder.newFile("notes.txt");
+        OutputStream out = new FileOutputStream(file);
+        out.write("E2 A2 D3 G3 B3 E4".getBytes("US-ASCII"));
+        out.close();
+        new WavFileSource(file);
+    }
+
+    private static short[] readAll(WavFileSource source, int chunk) throws IOException {
+        source.start();
+        short[] data = new short[(int) source.getFrameCount()];
+        int total = 0;
+        int read;
+        while ((read = source.read(data, total, Math.min(chunk, data.length - total))) > 0) {
+            total += read;
+        }
+        source.stop();
+        return java.util.Arrays.copyOf(data, total);
+    }
+}
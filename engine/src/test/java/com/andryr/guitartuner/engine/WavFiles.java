@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner.engine;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes the WAV files read by the tests. Public so that the tools tests, which depend on the
+ * engine test classes, write their files the same way.
+ */
+public class WavFiles {
+
+    public static final int PCM = 1;
+    public static final int FLOAT = 3;
+
+    private WavFiles() {
+    }
+
+    public static void write16(File file, int sampleRate, short[]... channels) throws IOException {
+        write(file, sampleRate, PCM, 16, channels);
+    }
+
+    /**
+     * Writes the 16-bit samples in the given format, with a chunk the reader must skip before
+     * the data.
+     */
+    public static void write(File file, int sampleRate, int format, int bitsPerSample, short[]... channels)
+            throws IOException {
+        int frames = channels[0].length;
+        int bytesPerSample = bitsPerSample / 8;
+        int dataSize = frames * channels.length * bytesPerSample;
+        byte[] list = "LIST\u0004\u0000\u0000\u0000INFO".getBytes("US-ASCII");
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            out.write("RIFF".getBytes("US-ASCII"));
+            writeInt(out, 4 + 24 + list.length + 8 + dataSize, 4);
+            out.write("WAVEfmt ".getBytes("US-ASCII"));
+            writeInt(out, 16, 4);
+            writeInt(out, format, 2);
+            writeInt(out, channels.length, 2);
+            writeInt(out, sampleRate, 4);
+            writeInt(out, sampleRate * channels.length * bytesPerSample, 4);
+            writeInt(out, channels.length * bytesPerSample, 2);
+            writeInt(out, bitsPerSample, 2);
+            out.write(list);
+            out.write("data".getBytes("US-ASCII"));
+            writeInt(out, dataSize, 4);
+            for (int i = 0; i < frames; i++) {
+                for (short[] channel : channels) {
+                    if (format == FLOAT) {
+                        writeInt(out, Float.floatToIntBits(channel[i] / 32768f), 4);
+                    } else {
+                        // extra low bits, dropped again by the reader
+                        writeInt(out, channel[i] << (bitsPerSample - 16) | (bitsPerSample > 16 ? 0x7F : 0),
+                                bytesPerSample);
+                    }
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void writeInt(OutputStream out, int value, int bytes) throws IOException {
+        for (int i = 0; i < bytes; i++) {
+            out.write(value >> (8 * i));
+        }
+    }
+}
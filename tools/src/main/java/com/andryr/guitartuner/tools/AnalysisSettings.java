@@ -0,0 +1,47 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner.tools;
+
+import com.andryr.guitartuner.engine.PitchDetectors;
+import com.andryr.guitartuner.engine.PitchEngine;
+import com.andryr.guitartuner.engine.PitchProcessor;
+
+/**
+ * Parameters of an offline analysis, shared by every engine it creates.
+ */
+public class AnalysisSettings {
+
+    String detector = PitchDetectors.AMDF;
+    int hopSize = PitchProcessor.DEFAULT_HOP_SIZE;
+    int frameSize = PitchEngine.DEFAULT_FRAME_SIZE;
+    float minFreq = PitchEngine.DEFAULT_MIN_FREQ;
+    float maxFreq = PitchEngine.DEFAULT_MAX_FREQ;
+    float reference = 440;
+    boolean tracking = false;
+
+    /**
+     * @return a new engine configured with these settings
+     */
+    public PitchEngine createEngine() {
+        PitchEngine engine = new PitchEngine();
+        engine.setDetector(PitchDetectors.create(detector));
+        engine.setFrameSize(frameSize);
+        engine.setFrequencyRange(minFreq, maxFreq);
+        engine.setTracking(tracking);
+        return engine;
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner.tools;
+
+import com.andryr.guitartuner.engine.PitchDetectors;
+import com.andryr.guitartuner.engine.PitchEngine;
+import com.andryr.guitartuner.engine.PitchResult;
+import com.andryr.guitartuner.engine.WavFileSource;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Command line analysis of WAV files.
+ * <p>
+ * A single file is analysed on the calling thread and its pitch track is printed as CSV, one
+ * row per hop. With several files, a directory, or --jobs, the files are analysed in
+ * parallel by a {@link BatchAnalysis}: the pitch tracks are written to the --output directory
+ * if there is one, and the throughput is printed in seconds of audio per second.
+ *
+ * <pre>
+ * AnalyzeWav [--detector NAME] [--hop SAMPLES] [--frame SAMPLES] [--min HZ] [--max HZ]
+ *            [--reference HZ] [--tracking] [--jobs THREADS] [--chunk SECONDS]
+ *            [--output FILE_OR_DIRECTORY] FILE.wav|DIRECTORY...
+ * </pre>
+ */
+public class AnalyzeWav {
+
+    private static final String USAGE = "usage: AnalyzeWav [--detector NAME] [--hop SAMPLES] [--frame SAMPLES]"
+            + " [--min HZ] [--max HZ] [--reference HZ] [--tracking] [--jobs THREADS] [--chunk SECONDS]"
+            + " [--output FILE_OR_DIRECTORY] FILE.wav|DIRECTORY...";
+
+    private final AnalysisSettings mSettings = new AnalysisSettings();
+    private int mJobs = 0;
+    private float mChunkDuration = BatchAnalysis.DEFAULT_CHUNK_DURATION;
+    private File mOutput;
+    private final List<File> mInputs = new ArrayList<>();
+
+    public static void main(String[] args) {
+        AnalyzeWav analyzer = new AnalyzeWav();
+        try {
+            analyzer.parseArguments(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        try {
+            if (analyzer.isBatch()) {
+                analyzer.analyzeBatch();
+            } else {
+                analyzer.analyze();
+            }
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    void parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--tracking")) {
+                mSettings.tracking = true;
+            } else if (arg.startsWith("--")) {
+                if (i + 1 == args.length) {
+                    throw new IllegalArgumentException("Missing value for " + arg);
+                }
+                String value = args[++i];
+                if (arg.equals("--detector")) {
+                    PitchDetectors.create(value);
+                    mSettings.detector = value;
+                } else if (arg.equals("--hop")) {
+                    mSettings.hopSize = Integer.parseInt(value);
+                } else if (arg.equals("--frame")) {
+                    mSettings.frameSize = Integer.parseInt(value);
+                } else if (arg.equals("--min")) {
+                    mSettings.minFreq = Float.parseFloat(value);
+                } else if (arg.equals("--max")) {
+                    mSettings.maxFreq = Float.parseFloat(value);
+                } else if (arg.equals("--reference")) {
+                    mSettings.reference = Float.parseFloat(value);
+                } else if (arg.equals("--jobs")) {
+                    mJobs = Integer.parseInt(value);
+                    if (mJobs <= 0) {
+                        throw new IllegalArgumentException("Invalid number of jobs: " + value);
+                    }
+                } else if (arg.equals("--chunk")) {
+                    mChunkDuration = Float.parseFloat(value);
+                    if (mChunkDuration <= 0) {
+                        throw new IllegalArgumentException("Invalid chunk duration: " + value);
+                    }
+                } else if (arg.equals("--output")) {
+                    mOutput = new File(value);
+                } else {
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+            } else {
+                mInputs.add(new File(arg));
+            }
+        }
+        if (mInputs.isEmpty()) {
+            throw new IllegalArgumentException("No input file");
+        }
+        if (mSettings.hopSize <= 0 || mSettings.frameSize < mSettings.hopSize || mSettings.reference <= 0) {
+            throw new IllegalArgumentException("Invalid hop, frame or reference");
+        }
+        // fails early on an invalid range
+        mSettings.createEngine();
+    }
+
+    boolean isBatch() {
+        return mJobs > 0 || mInputs.size() > 1 || mInputs.get(0).isDirectory();
+    }
+
+    void analyze() throws IOException {
+        File input = mInputs.get(0);
+        OutputStream out = mOutput != null ? new FileOutputStream(mOutput) : System.out;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"), 1 << 16);
+        try {
+            analyze(new WavFileSource(input), mSettings.createEngine(), mSettings.hopSize,
+                    new PitchTrackWriter(writer, mSettings.reference));
+        } catch (IOException e) {
+            throw new IOException("Failed to analyse " + input + ": " + e.getMessage(), e);
+        } finally {
+            if (mOutput != null) {
+                writer.close();
+            } else {
+                writer.flush();
+            }
+        }
+    }
+
+    void analyzeBatch() throws IOException {
+        List<BatchAnalysis.Job> jobs = new ArrayList<>();
+        for (File input : mInputs) {
+            if (input.isDirectory()) {
+                addDirectory(jobs, input, mOutput);
+            } else {
+                jobs.add(new BatchAnalysis.Job(input, mOutput != null ? csvFile(mOutput, input) : null));
+            }
+        }
+
+        int threads = mJobs > 0 ? mJobs : Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        BatchAnalysis batch = new BatchAnalysis(mSettings, mChunkDuration);
+        try {
+            batch.run(jobs, pool);
+        } finally {
+            pool.shutdown();
+        }
+        System.err.println(String.format(Locale.ROOT, "%d files, %.1fs of audio in %.1fs on %d threads: %.1fs/s",
+                jobs.size(), batch.getAudioSeconds(), batch.getElapsedSeconds(), threads, batch.getThroughput()));
+    }
+
+    /**
+     * Adds the WAV files of the directory and its subdirectories, the tracks mirror the tree
+     * under the output directory.
+     */
+    private static void addDirectory(List<BatchAnalysis.Job> jobs, File directory, File output) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            if (file.isDirectory()) {
+                addDirectory(jobs, file, output != null ? new File(output, file.getName()) : null);
+            } else if (file.getName().toLowerCase(Locale.ROOT).endsWith(".wav")) {
+                jobs.add(new BatchAnalysis.Job(file, output != null ? csvFile(output, file) : null));
+            }
+        }
+    }
+
+    private static File csvFile(File directory, File wav) {
+        String name = wav.getName();
+        int dot = name.lastIndexOf('.');
+        return new File(directory, (dot > 0 ? name.substring(0, dot) : name) + ".csv");
+    }
+
+    /**
+     * Writes a row for every hop of the source, whether a pitch was detected or not.
+     */
+    static void analyze(WavFileSource source, PitchEngine engine, int hopSize, PitchTrackWriter track)
+            throws IOException {
+        track.writeHeader();
+        final short[] hop = new short[hopSize];
+        final int sampleRate = source.getSampleRate();
+        long position = 0;
+        source.start();
+        try {
+            int read;
+            while ((read = source.read(hop, 0, hopSize)) >= 0) {
+                PitchResult result = engine.processHop(hop, read, sampleRate);
+                position += read;
+                track.write((double) position / sampleRate, result);
+            }
+        } finally {
+            source.stop();
+        }
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner.tools;
+
+import com.andryr.guitartuner.engine.PitchEngine;
+import com.andryr.guitartuner.engine.PitchResult;
+import com.andryr.guitartuner.engine.WavFileSource;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Analyses many WAV files on a {@link ForkJoinPool}.
+ * <p>
+ * Every file is split into chunks of a fixed duration which are analysed independently.
+ * A chunk starts reading a little more than a frame before its first hop and drops the rows
+ * of that overlap. By then the engine has forgotten the samples before the overlap and has a
+ * previous estimate to compare with, so the rows are the same as if the file had been read
+ * from the start. The rows are aligned on the hops of the whole file.
+ * <p>
+ * Each worker thread reuses its own engine and hop buffer for all the chunks it runs.
+ */
+public class BatchAnalysis {
+
+    public static final float DEFAULT_CHUNK_DURATION = 60;
+
+    private final AnalysisSettings mSettings;
+    private final float mChunkDuration;
+    private final ThreadLocal<Worker> mWorkers = new ThreadLocal<Worker>() {
+        @Override
+        protected Worker initialValue() {
+            return new Worker(mSettings.createEngine(), new short[mSettings.hopSize]);
+        }
+    };
+
+    private long mAudioFrames;
+    private double mAudioSeconds;
+    private long mElapsedNanos;
+
+    private static class Worker {
+        final PitchEngine engine;
+        final short[] hop;
+
+        Worker(PitchEngine engine, short[] hop) {
+            this.engine = engine;
+            this.hop = hop;
+        }
+    }
+
+    /**
+     * A file to analyse and where to write its pitch track, null to only measure the
+     * throughput.
+     */
+    public static class Job {
+        final File input;
+        final File output;
+
+        public Job(File input, File output) {
+            this.input = input;
+            this.output = output;
+        }
+    }
+
+    /**
+     * @param chunkDuration seconds of audio per chunk, before the overlap is added
+     */
+    public BatchAnalysis(AnalysisSettings settings, float chunkDuration) {
+        if (chunkDuration <= 0) {
+            throw new IllegalArgumentException("Invalid chunk duration: " + chunkDuration);
+        }
+        mSettings = settings;
+        mChunkDuration = chunkDuration;
+    }
+
+    /**
+     * Analyses the files on the pool and waits for all of them.
+     *
+     * @throws IOException the first error, after the other files were analysed
+     */
+    public void run(List<Job> jobs, ForkJoinPool pool) throws IOException {
+        long start = System.nanoTime();
+        List<FileTask> tasks = new ArrayList<>(jobs.size());
+        for (Job job : jobs) {
+            FileTask task = new FileTask(job);
+            tasks.add(task);
+            pool.execute(task);
+        }
+
+        IOException error = null;
+        long frames = 0;
+        double seconds = 0;
+        for (FileTask task : tasks) {
+            task.join();
+            if (task.mError != null) {
+                if (error == null) {
+                    error = task.mError;
+                }
+                continue;
+            }
+            frames += task.mFrames;
+            seconds += (double) task.mFrames / task.mSampleRate;
+        }
+        mElapsedNanos = System.nanoTime() - start;
+        mAudioFrames = frames;
+        mAudioSeconds = seconds;
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * @return the number of samples per channel analysed by the last run
+     */
+    public long getAudioFrames() {
+        return mAudioFrames;
+    }
+
+    /**
+     * @return the duration of the audio analysed by the last run, in seconds
+     */
+    public double getAudioSeconds() {
+        return mAudioSeconds;
+    }
+
+    /**
+     * @return the wall clock duration of the last run, in seconds
+     */
+    public double getElapsedSeconds() {
+        return mElapsedNanos / 1e9;
+    }
+
+    /**
+     * @return seconds of audio analysed per second of wall clock time by the last run
+     */
+    public double getThroughput() {
+        return mElapsedNanos > 0 ? mAudioSeconds / getElapsedSeconds() : 0;
+    }
+
+    /**
+     * Splits a file into chunks, then writes their rows in order.
+     */
+    private class FileTask extends RecursiveTask<Void> {
+        private static final long serialVersionUID = 1L;
+
+        private final Job mJob;
+        private long mFrames;
+        private int mSampleRate;
+        private IOException mError;
+
+        FileTask(Job job) {
+            mJob = job;
+        }
+
+        @Override
+        protected Void compute() {
+            try {
+                analyze();
+            } catch (IOException e) {
+                mError = new IOException("Failed to analyse " + mJob.input + ": " + e.getMessage(), e);
+            }
+            return null;
+        }
+
+        private void analyze() throws IOException {
+            WavFileSource header = new WavFileSource(mJob.input);
+            header.stop();
+            mSampleRate = header.getSampleRate();
+            long frames = header.getFrameCount();
+            final int hopSize = mSettings.hopSize;
+            long chunkFrames = Math.max(1, (long) (mChunkDuration * mSampleRate) / hopSize) * hopSize;
+
+            List<ChunkTask> chunks = new ArrayList<>();
+            for (long start = 0; start < frames; start += chunkFrames) {
+                chunks.add(new ChunkTask(mJob.input, start, Math.min(frames, start + chunkFrames),
+                        mJob.output != null));
+            }
+            invokeAll(chunks);
+
+            Writer writer = null;
+            if (mJob.output != null) {
+                File parent = mJob.output.getAbsoluteFile().getParentFile();
+                if (!parent.isDirectory() && !parent.mkdirs()) {
+                    throw new IOException("Can't create " + parent);
+                }
+                writer = new OutputStreamWriter(new FileOutputStream(mJob.output), "UTF-8");
+                writer.write(PitchTrackWriter.HEADER);
+                writer.write('\n');
+            }
+            try {
+                for (ChunkTask chunk : chunks) {
+                    if (chunk.mError != null) {
+                        throw chunk.mError;
+                    }
+                    if (writer != null) {
+                        writer.write(chunk.mRows.toString());
+                    }
+                }
+            } finally {
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+            mFrames = frames;
+        }
+    }
+
+    /**
+     * Analyses the hops ending after start and up to end, the rows are kept in memory.
+     */
+    private class ChunkTask extends RecursiveTask<Void> {
+        private static final long serialVersionUID = 1L;
+
+        private final File mInput;
+        private final long mStart;
+        private final long mEnd;
+        private final boolean mKeepRows;
+        private StringWriter mRows;
+        private IOException mError;
+
+        ChunkTask(File input, long start, long end, boolean keepRows) {
+            mInput = input;
+            mStart = start;
+            mEnd = end;
+            mKeepRows = keepRows;
+        }
+
+        @Override
+        protected Void compute() {
+            try {
+                analyze();
+            } catch (IOException e) {
+                mError = e;
+            }
+            return null;
+        }
+
+        private void analyze() throws IOException {
+            final Worker worker = mWorkers.get();
+            final PitchEngine engine = worker.engine;
+            final short[] hop = worker.hop;
+            final int hopSize = hop.length;
+            // a frame to fill the engine and a hop for the previous estimate, in whole hops
+            long overlap = ((mSettings.frameSize + hopSize - 1) / hopSize + 1) * hopSize;
+            long position = Math.max(0, mStart - overlap);
+
+            mRows = new StringWriter();
+            PitchTrackWriter track = mKeepRows ? new PitchTrackWriter(mRows, mSettings.reference) : null;
+            WavFileSource source = new WavFileSource(mInput);
+            engine.reset();
+            try {
+                final int sampleRate = source.getSampleRate();
+                source.seek(position);
+                source.start();
+                while (position < mEnd) {
+                    int read = source.read(hop, 0, (int) Math.min(hopSize, mEnd - position));
+                    if (read < 0) {
+                        break;
+                    }
+                    PitchResult result = engine.processHop(hop, read, sampleRate);
+                    position += read;
+                    if (track != null && position > mStart) {
+                        track.write((double) position / sampleRate, result);
+                    }
+                }
+            } finally {
+                source.stop();
+            }
+        }
+    }
+}
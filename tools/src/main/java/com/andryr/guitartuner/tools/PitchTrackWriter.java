@@ -0,0 +1,76 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner.tools;
+
+import com.andryr.guitartuner.engine.PitchResult;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * Writes a pitch track as CSV, one row per analysed frame:
+ * time,frequency,note,cents,intensity
+ * <p>
+ * The time is the end of the frame in seconds. Frequency, note and cents are left empty when
+ * no pitch was detected, the nearest equal-tempered note is named relative to the reference
+ * pitch of A4.
+ */
+public class PitchTrackWriter {
+
+    public static final String HEADER = "time,frequency,note,cents,intensity";
+
+    private static final String[] NOTE_NAMES = {"C", "C#", "D", "D#", "E", "F", "F#", "G", "G#", "A", "A#", "B"};
+    private static final int A4 = 69;
+
+    private final Writer mWriter;
+    private final float mReference;
+
+    public PitchTrackWriter(Writer writer, float reference) {
+        mWriter = writer;
+        mReference = reference;
+    }
+
+    public void writeHeader() throws IOException {
+        mWriter.write(HEADER);
+        mWriter.write('\n');
+    }
+
+    public void write(double time, PitchResult result) throws IOException {
+        StringBuilder row = new StringBuilder(48);
+        row.append(String.format(Locale.ROOT, "%.3f", time)).append(',');
+        if (result.isDetected() && result.getFrequency() > 0) {
+            double semitones = 12 * Math.log(result.getFrequency() / mReference) / Math.log(2);
+            int note = (int) Math.round(semitones) + A4;
+            row.append(String.format(Locale.ROOT, "%.2f", result.getFrequency())).append(',')
+                    .append(noteName(note)).append(',')
+                    .append(String.format(Locale.ROOT, "%.1f", 100 * (semitones - (note - A4)))).append(',');
+        } else {
+            row.append(",,,");
+        }
+        row.append(String.format(Locale.ROOT, "%.1f", result.getIntensity())).append('\n');
+        mWriter.append(row);
+    }
+
+    /**
+     * @param note MIDI note number, 69 being A4
+     */
+    static String noteName(int note) {
+        int index = ((note % 12) + 12) % 12;
+        return NOTE_NAMES[index] + ((note - index) / 12 - 1);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner.tools;
+
+import com.andryr.guitartuner.engine.PitchDetectors;
+import com.andryr.guitartuner.engine.WavFileSource;
+import com.andryr.guitartuner.engine.WavFiles;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class BatchAnalysisTest {
+
+    private static final int SAMPLE_RATE = 22050;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void run_chunksGiveSameTrackAsSequentialAnalysis() throws IOException {
+        File wav = mFolder.newFile("strings.wav");
+        // a new string every 1.3s, so that chunk boundaries fall on and between notes
+        writeWav(wav, 20 * SAMPLE_RATE, 1.3f, 82.41f, 110f, 146.83f, 196f, 246.94f, 329.63f);
+
+        for (String detector : new String[]{PitchDetectors.AMDF, PitchDetectors.INCREMENTAL_AMDF}) {
+            AnalysisSettings settings = new AnalysisSettings();
+            settings.detector = detector;
+            settings.tracking = true;
+
+            StringWriter expected = new StringWriter();
+            AnalyzeWav.analyze(new WavFileSource(wav), settings.createEngine(), settings.hopSize,
+                    new PitchTrackWriter(expected, settings.reference));
+
+            File csv = new File(mFolder.getRoot(), detector + "/strings.csv");
+            BatchAnalysis batch = new BatchAnalysis(settings, 3);
+            ForkJoinPool pool = new ForkJoinPool(4);
+            batch.run(Arrays.asList(new BatchAnalysis.Job(wav, csv)), pool);
+            pool.shutdown();
+
+            String actual = new String(Files.readAllBytes(csv.toPath()), Charset.forName("UTF-8"));
+            assertEquals(detector, expected.toString(), actual);
+            assertEquals(20 * SAMPLE_RATE, batch.getAudioFrames());
+            assertEquals(20, batch.getAudioSeconds(), 1e-9);
+            assertTrue(batch.getThroughput() > 0);
+        }
+    }
+
+    @Test
+    public void run_reportsErrorsAfterOtherFiles() throws IOException {
+        File wav = mFolder.newFile("a2.wav");
+        writeWav(wav, 2 * SAMPLE_RATE, 2, 110f);
+        File broken = mFolder.newFile("broken.wav");
+
+        BatchAnalysis batch = new BatchAnalysis(new AnalysisSettings(), 1);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            batch.run(Arrays.asList(new BatchAnalysis.Job(broken, null), new BatchAnalysis.Job(wav, null)), pool);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("broken.wav"));
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(2 * SAMPLE_RATE, batch.getAudioFrames());
+    }
+
+    /**
+     * Writes a mono 16-bit file playing the notes in turn, each for noteDuration seconds.
+     */
+    private static void writeWav(File file, int frames, float noteDuration, float... notes) throws IOException {
+        short[] samples = new short[frames];
+        for (int i = 0; i < frames; i++) {
+            float freq = notes[(int) (i / (noteDuration * SAMPLE_RATE)) % notes.length];
+            double sample = 0;
+            for (int harmonic = 1; harmonic <= 3; harmonic++) {
+                sample += Math.sin(2 * Math.PI * freq * harmonic * i / SAMPLE_RATE) / harmonic;
+            }
+            samples[i] = (short) (5000 * sample);
+        }
+        WavFiles.write16(file, SAMPLE_RATE, samples);
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2016 andryr
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.andryr.guitartuner.tools;
+
+import com.andryr.guitartuner.engine.PitchEngine;
+import com.andryr.guitartuner.engine.PitchResult;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+public class PitchTrackWriterTest {
+
+    private static final int SAMPLE_RATE = 44100;
+
+    @Test
+    public void noteName() {
+        assertEquals("A4", PitchTrackWriter.noteName(69));
+        assertEquals("E2", PitchTrackWriter.noteName(40));
+        assertEquals("C-1", PitchTrackWriter.noteName(0));
+        assertEquals("B-2", PitchTrackWriter.noteName(-1));
+    }
+
+    @Test
+    public void write_detectedAndUndetectedRows() throws IOException {
+        StringWriter out = new StringWriter();
+        PitchTrackWriter track = new PitchTrackWriter(out, 440);
+        PitchEngine engine = new PitchEngine();
+
+        track.writeHeader();
+        track.write(0.0232, engine.process(new short[8192], 8192, SAMPLE_RATE));
+        short[] tone = new short[8192];
+        for (int i = 0; i < tone.length; i++) {
+            tone[i] = (short) (8000 * Math.sin(2 * Math.PI * 111 * i / SAMPLE_RATE));
+        }
+        engine.process(tone, tone.length, SAMPLE_RATE);
+        PitchResult result = engine.process(tone, tone.length, SAMPLE_RATE);
+        assertTrue(result.isDetected());
+        track.write(1.5, result);
+
+        String[] rows = out.toString().split("\n");
+        assertEquals(3, rows.length);
+        assertEquals(PitchTrackWriter.HEADER, rows[0]);
+        assertEquals("0.023,,,,0.0", rows[1]);
+        // 111Hz is 15.6 cents above A2
+        assertTrue(rows[2], rows[2].matches("1\\.500,111\\.\\d\\d,A2,1[56]\\.\\d,\\d+\\.\\d"));
+    }
+}